@@ -0,0 +1,118 @@
+package com.shodh.code.controller;
+
+import com.shodh.code.dto.ContestDetailsDto;
+import com.shodh.code.dto.LeaderboardEntryDto;
+import com.shodh.code.dto.ProblemDto;
+import com.shodh.code.model.Contest;
+import com.shodh.code.model.LeaderboardEntry;
+import com.shodh.code.service.CacheRegistry;
+import com.shodh.code.service.ContestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// ContestController's entity -> DTO mapping (and ETag computation) with the service answering
+// from memory, i.e. the controller's own share of a contest page / leaderboard request.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ContestMappingBenchmark {
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    private ContestController controller;
+    private String etag;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Contest contest = new Contest();
+        contest.setId("contest-1");
+        contest.setName("Benchmark Contest");
+        contest.setStartTime(Instant.parse("2024-01-01T00:00:00Z"));
+        contest.setEndTime(Instant.parse("2024-01-01T02:00:00Z"));
+        List<ProblemDto> problems = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            problems.add(new ProblemDto("problem-" + i, "Problem " + i, "Read the input and print the answer. ".repeat(10)));
+        }
+        List<LeaderboardEntry> entries = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            entries.add(new LeaderboardEntry(String.format("%024x", i), "user" + i, (rows - i) * 10));
+        }
+        ContestService service = new ContestService(null, null, null, null,
+                new CacheRegistry(new SimpleMeterRegistry()), true, 10, 300) {
+            @Override
+            public Optional<Contest> getById(String id) {
+                return Optional.of(contest);
+            }
+
+            @Override
+            public List<ProblemDto> getProblems(String contestId) {
+                return problems;
+            }
+
+            @Override
+            public List<LeaderboardEntry> getLeaderboard(String contestId) {
+                return entries;
+            }
+
+            @Override
+            public String getLeaderboardVersion(String contestId) {
+                return "1:42";
+            }
+        };
+        controller = new ContestController(service, null, null);
+        // checkNotModified writes the ETag to the servlet response, not to the ResponseEntity
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        controller.getLeaderboard("contest-1", 0, null, new ServletWebRequest(new MockHttpServletRequest("GET", "/api/contests/contest-1/leaderboard"), first));
+        etag = first.getHeader("ETag");
+        if (controller.getLeaderboard("contest-1", 0, null, request(etag)) != null) {
+            throw new IllegalStateException("expected a 304 for etag " + etag);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<List<LeaderboardEntryDto>> leaderboard() {
+        return controller.getLeaderboard("contest-1", 0, null, request(null));
+    }
+
+    // a polling client whose copy is current: answered from the version, nothing mapped
+    @Benchmark
+    public ResponseEntity<List<LeaderboardEntryDto>> leaderboardNotModified() {
+        return controller.getLeaderboard("contest-1", 0, null, request(etag));
+    }
+
+    @Benchmark
+    public ResponseEntity<ContestDetailsDto> contestDetails() {
+        return controller.getContest("contest-1", request(null));
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/contests/contest-1/leaderboard");
+        if (ifNoneMatch != null) req.addHeader("If-None-Match", ifNoneMatch);
+        return new ServletWebRequest(req, new MockHttpServletResponse());
+    }
+}
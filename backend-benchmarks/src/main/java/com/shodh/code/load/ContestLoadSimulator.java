@@ -0,0 +1,340 @@
+package com.shodh.code.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Replays a contest against a running backend (start it with the loadtest profile so the judge uses
+// the stub sandbox): creates a contest with M problems and N users, then each user loads the contest,
+// polls the leaderboard with If-None-Match, submits at random intervals (plus everyone at once on
+// every burst) and polls each submission until it has a verdict. Optional spammers resubmit to one
+// problem at a fixed rate; their verdict latency is reported apart from everyone else's. Requests
+// are fired on a schedule and sent asynchronously, so a slow server doesn't slow the offered load
+// down.
+//
+//   java -cp backend-benchmarks/target/benchmarks.jar com.shodh.code.load.ContestLoadSimulator \
+//        --url=http://localhost:8080 --users=200 --problems=5 --duration=120
+public class ContestLoadSimulator {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Options o;
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> verdicts = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingVerdicts = new AtomicInteger();
+    private final AtomicLong attempts = new AtomicLong();
+    private volatile boolean submitting = true;
+
+    private String contestId;
+    private final List<String> problemIds = new ArrayList<>();
+    private final List<String> userIds = new ArrayList<>();
+    private final List<String> spammerIds = new ArrayList<>();
+
+    public ContestLoadSimulator(Options o) {
+        this.o = o;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicInteger threadIds = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(o.threads, r -> {
+            Thread t = new Thread(r, "load-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ContestLoadSimulator(Options.parse(args)).run();
+    }
+
+    public void run() throws Exception {
+        setUp();
+        System.out.printf(Locale.ROOT, "[load] contest %s: %d users (+%d spammers), %d problems x %d tests, %ds%n",
+                contestId, o.users, o.spammers, o.problems, o.tests, o.durationSeconds);
+        samples.clear(); // setup requests don't count
+
+        long start = System.nanoTime();
+        for (String userId : userIds) {
+            long offset = ThreadLocalRandom.current().nextLong(Math.max(1, o.leaderboardMillis));
+            scheduler.execute(() -> get("GET /api/contests/{id}", "/api/contests/" + contestId, null));
+            UserState u = new UserState(userId);
+            scheduler.scheduleAtFixedRate(() -> pollLeaderboard(u), offset, o.leaderboardMillis, TimeUnit.MILLISECONDS);
+            scheduleNextSubmission(u);
+        }
+        if (o.burstSeconds > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                if (!submitting) return;
+                System.out.println("[load] burst: " + userIds.size() + " submissions");
+                for (String userId : userIds) submit(userId, false);
+            }, o.burstSeconds, o.burstSeconds, TimeUnit.SECONDS);
+        }
+        for (String spammerId : spammerIds) {
+            scheduler.scheduleAtFixedRate(() -> {
+                if (submitting) submit(spammerId, true);
+            }, 0, o.spamEveryMillis, TimeUnit.MILLISECONDS);
+        }
+
+        Thread.sleep(o.durationSeconds * 1000L);
+        submitting = false;
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(o.drainSeconds);
+        while (pendingVerdicts.get() > 0 && System.nanoTime() < drainUntil) Thread.sleep(200);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        scheduler.shutdownNow();
+
+        report(elapsed);
+        HttpResponse<String> stats = http.send(request("/api/judge/stats").build(), HttpResponse.BodyHandlers.ofString());
+        System.out.println("[load] judge stats: " + stats.body());
+    }
+
+    private void setUp() throws Exception {
+        Map<String, Object> contest = new LinkedHashMap<>();
+        contest.put("name", "Load test " + Instant.now());
+        contest.put("startTime", Instant.now().toString());
+        contest.put("endTime", Instant.now().plus(Duration.ofHours(2)).toString());
+        contestId = post("/api/contests", contest).get("id").asText();
+
+        for (int p = 0; p < o.problems; p++) {
+            List<String> inputs = new ArrayList<>();
+            for (int t = 0; t < o.tests; t++) inputs.add("case " + p + "-" + t);
+            Map<String, Object> problem = new LinkedHashMap<>();
+            problem.put("contestId", contestId);
+            problem.put("title", "Echo " + p);
+            problem.put("description", "Print the input line.");
+            problem.put("inputTestCases", inputs);
+            problem.put("outputTestCases", inputs);
+            problemIds.add(post("/api/problems", problem).get("id").asText());
+        }
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        for (int u = 0; u < o.users; u++) {
+            userIds.add(post("/api/users/join", Map.of("username", "load-" + run + "-" + u)).get("id").asText());
+        }
+        for (int u = 0; u < o.spammers; u++) {
+            spammerIds.add(post("/api/users/join", Map.of("username", "load-" + run + "-spam-" + u)).get("id").asText());
+        }
+    }
+
+    private void scheduleNextSubmission(UserState u) {
+        // exponential think time between a user's submissions
+        double mean = o.submitEverySeconds * 1000d;
+        long delay = (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        scheduler.schedule(() -> {
+            if (!submitting) return;
+            submit(u.userId, false);
+            scheduleNextSubmission(u);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(String userId, boolean spammer) {
+        // spammers keep resubmitting to the first problem
+        String problemId = spammer ? problemIds.get(0) : problemIds.get(ThreadLocalRandom.current().nextInt(problemIds.size()));
+        String who = spammer ? "spammers" : "users";
+        long attempt = attempts.incrementAndGet();
+        // distinct code per attempt: the stub derives the verdict from it and the verdict cache misses
+        String code = "// " + userId + " attempt " + attempt + "\n"
+                + "import java.util.Scanner;\n"
+                + "public class Solution { public static void main(String[] a) {"
+                + " System.out.println(new Scanner(System.in).nextLine()); } }\n";
+        Map<String, Object> body = Map.of("userId", userId, "problemId", problemId, "code", code, "language", "java");
+        long submittedAt = System.nanoTime();
+        send("POST /api/submissions", request("/api/submissions")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json(body))).build())
+                .thenAccept(res -> {
+                    if (res.statusCode() == 429) {
+                        verdicts.computeIfAbsent("(" + who + " rejected 429)", k -> new AtomicInteger()).incrementAndGet();
+                    } else if (res.statusCode() / 100 == 2) {
+                        pendingVerdicts.incrementAndGet();
+                        String id = readTree(res.body()).get("submissionId").asText();
+                        scheduler.schedule(() -> pollStatus(id, submittedAt, who), o.pollMillis, TimeUnit.MILLISECONDS);
+                    }
+                });
+    }
+
+    private void pollStatus(String submissionId, long submittedAt, String who) {
+        get("GET /api/submissions/{id}", "/api/submissions/" + submissionId, null).whenComplete((res, err) -> {
+            // transport errors and 5xx are retried; anything else but Pending/Running is final
+            boolean failed = err != null || res.statusCode() >= 500;
+            String status = failed || res.statusCode() != 200 ? "" : readTree(res.body()).path("status").asText("");
+            if (failed || status.equals("Pending") || status.equals("Running")) {
+                scheduler.schedule(() -> pollStatus(submissionId, submittedAt, who), o.pollMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            record("verdict (submit -> final status, " + who + ")", System.nanoTime() - submittedAt, false);
+            verdicts.computeIfAbsent(status.isEmpty() ? "(" + res.statusCode() + ")" : status, k -> new AtomicInteger()).incrementAndGet();
+            pendingVerdicts.decrementAndGet();
+        });
+    }
+
+    private void pollLeaderboard(UserState u) {
+        get("GET /api/contests/{id}/leaderboard", "/api/contests/" + contestId + "/leaderboard?limit=100", u.leaderboardETag)
+                .thenAccept(res -> res.headers().firstValue("ETag").ifPresent(tag -> u.leaderboardETag = tag));
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(String endpoint, String path, String ifNoneMatch) {
+        HttpRequest.Builder b = request(path).GET();
+        if (ifNoneMatch != null) b.header("If-None-Match", ifNoneMatch);
+        return send(endpoint, b.build());
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String endpoint, HttpRequest req) {
+        long start = System.nanoTime();
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((res, err) -> {
+                    int code = res == null ? 0 : res.statusCode();
+                    String key = code == 304 ? endpoint + " (304)" : endpoint;
+                    record(key, System.nanoTime() - start, err != null || code >= 500);
+                });
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(o.url + path)).timeout(Duration.ofSeconds(30));
+    }
+
+    private JsonNode post(String path, Object body) throws Exception {
+        HttpResponse<String> res = http.send(request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json(body))).build(), HttpResponse.BodyHandlers.ofString());
+        if (res.statusCode() / 100 != 2) throw new IllegalStateException("POST " + path + " -> " + res.statusCode() + " " + res.body());
+        return readTree(res.body());
+    }
+
+    private void record(String endpoint, long nanos, boolean error) {
+        samples.computeIfAbsent(endpoint, k -> new Samples()).add(nanos, error);
+    }
+
+    private void report(double elapsedSeconds) {
+        System.out.printf(Locale.ROOT, "%n%-42s %9s %9s %7s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<String, Samples> e : new TreeMap<>(samples).entrySet()) {
+            long[] sorted = e.getValue().sorted();
+            System.out.printf(Locale.ROOT, "%-42s %9d %9.1f %7d %9.1f %9.1f %9.1f %9.1f%n",
+                    e.getKey(), sorted.length, sorted.length / elapsedSeconds, e.getValue().errors(),
+                    millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.println();
+        System.out.println("[load] verdicts: " + new TreeMap<>(verdicts) + ", still pending: " + pendingVerdicts.get());
+    }
+
+    // nearest-rank percentile
+    private static double millis(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private static String json(Object o) {
+        try {
+            return JSON.writeValueAsString(o);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return JSON.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("not JSON: " + body, e);
+        }
+    }
+
+    private static final class UserState {
+        final String userId;
+        volatile String leaderboardETag;
+
+        UserState(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    // Latencies of one endpoint; a plain growable array is enough at load-generator rates.
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long nanos, boolean error) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+            if (error) errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+    }
+
+    public static final class Options {
+        String url = "http://localhost:8080";
+        int users = 100;
+        int problems = 5;
+        int tests = 10;
+        int durationSeconds = 60;
+        // mean seconds between one user's submissions
+        double submitEverySeconds = 30;
+        // every user submits at once this often (0 = no bursts)
+        int burstSeconds = 0;
+        // extra users that each submit every spamEveryMillis regardless of verdicts
+        int spammers = 0;
+        long spamEveryMillis = 1000;
+        long pollMillis = 1000;
+        long leaderboardMillis = 5000;
+        int drainSeconds = 60;
+        int threads = 4;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+                if (kv.length != 2) throw new IllegalArgumentException("expected --key=value, got " + arg);
+                switch (kv[0]) {
+                    case "url" -> o.url = kv[1].replaceAll("/+$", "");
+                    case "users" -> o.users = Integer.parseInt(kv[1]);
+                    case "problems" -> o.problems = Integer.parseInt(kv[1]);
+                    case "tests" -> o.tests = Integer.parseInt(kv[1]);
+                    case "duration" -> o.durationSeconds = Integer.parseInt(kv[1]);
+                    case "submit-every" -> o.submitEverySeconds = Double.parseDouble(kv[1]);
+                    case "burst-every" -> o.burstSeconds = Integer.parseInt(kv[1]);
+                    case "spammers" -> o.spammers = Integer.parseInt(kv[1]);
+                    case "spam-every-ms" -> o.spamEveryMillis = Long.parseLong(kv[1]);
+                    case "poll-ms" -> o.pollMillis = Long.parseLong(kv[1]);
+                    case "leaderboard-ms" -> o.leaderboardMillis = Long.parseLong(kv[1]);
+                    case "drain" -> o.drainSeconds = Integer.parseInt(kv[1]);
+                    case "threads" -> o.threads = Integer.parseInt(kv[1]);
+                    default -> throw new IllegalArgumentException("unknown option --" + kv[0]);
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.LeaderboardEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Leaderboard over synthetic submission sets: the old full scan + group-by that getLeaderboard
+// used to run per request, the board load (from the per-(user, problem) best scores Mongo's
+// aggregation returns), and what a request costs now (a page read off the board) plus the
+// per-verdict incremental update.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+    private static final int PROBLEMS = 10;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int submissions;
+
+    private String[] userIds;
+    private String[] problemIds;
+    // one row per submission, as it would come off the submissions collection
+    private int[] rowUser;
+    private int[] rowProblem;
+    private int[] rowScore;
+
+    // aggregateBestScores output: best[user][problem]
+    private int[][] best;
+
+    private LeaderboardService.ContestBoard board;
+    private SplittableRandom updates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int users = Math.max(10, Math.min(submissions / 10, 200_000));
+        userIds = new String[users];
+        for (int u = 0; u < users; u++) userIds[u] = String.format("%024x", u);
+        problemIds = new String[PROBLEMS];
+        for (int p = 0; p < PROBLEMS; p++) problemIds[p] = "problem-" + p;
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        rowUser = new int[submissions];
+        rowProblem = new int[submissions];
+        rowScore = new int[submissions];
+        for (int i = 0; i < submissions; i++) {
+            rowUser[i] = rnd.nextInt(users);
+            rowProblem[i] = rnd.nextInt(PROBLEMS);
+            rowScore[i] = rnd.nextInt(11) * 10;
+        }
+        best = new int[users][PROBLEMS];
+        for (int i = 0; i < submissions; i++) {
+            best[rowUser[i]][rowProblem[i]] = Math.max(best[rowUser[i]][rowProblem[i]], rowScore[i]);
+        }
+        board = load();
+        updates = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public List<LeaderboardEntry> legacyScanAndGroup() {
+        Map<String, Map<String, Integer>> userProblemBest = new HashMap<>();
+        for (int i = 0; i < submissions; i++) {
+            userProblemBest.computeIfAbsent(userIds[rowUser[i]], k -> new HashMap<>())
+                    .merge(problemIds[rowProblem[i]], rowScore[i], Math::max);
+        }
+        List<LeaderboardEntry> leaderboard = new ArrayList<>(userProblemBest.size());
+        for (Map.Entry<String, Map<String, Integer>> e : userProblemBest.entrySet()) {
+            int total = e.getValue().values().stream().mapToInt(Integer::intValue).sum();
+            leaderboard.add(new LeaderboardEntry(e.getKey(), "user", total));
+        }
+        leaderboard.sort(Comparator.comparing(LeaderboardEntry::getTotalScore).reversed());
+        return leaderboard;
+    }
+
+    @Benchmark
+    public LeaderboardService.ContestBoard load() {
+        LeaderboardService.ContestBoard b = new LeaderboardService.ContestBoard();
+        for (int u = 0; u < userIds.length; u++) {
+            b.addUser(userIds[u], "user");
+            for (int p = 0; p < PROBLEMS; p++) {
+                if (best[u][p] > 0) b.record(userIds[u], problemIds[p], best[u][p]);
+            }
+        }
+        return b;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<LeaderboardEntry> top100() {
+        return board.page(0, 100);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean recordVerdict() {
+        return board.record(userIds[updates.nextInt(userIds.length)], problemIds[updates.nextInt(PROBLEMS)],
+                updates.nextInt(11) * 10);
+    }
+}
@@ -0,0 +1,56 @@
+package com.shodh.code.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// What the process supervisor does with a process's merged stdout/stderr (e.g. a chatty compile or
+// a docker pull progress log): 8 KB reads into the capped OutputBuffer, then the final String.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class OutputBufferBenchmark {
+    private static final int CAP = 256 * 1024;
+
+    @Param({"65536", "16777216"})
+    public int bytes;
+
+    private byte[] output;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(bytes + 128);
+        int line = 0;
+        while (sb.length() < bytes) {
+            sb.append("Solution.java:").append(line++).append(": warning: [unchecked] unchecked conversion\n");
+        }
+        output = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String drain() throws IOException {
+        InputStream in = new ByteArrayInputStream(output);
+        OutputBuffer buffer = new OutputBuffer(CAP);
+        byte[] chunk = new byte[8192];
+        for (int n; (n = in.read(chunk)) > 0; ) buffer.write(chunk, 0, n);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.shodh.code.service;
+
+import com.shodh.code.service.checker.ExactChecker;
+import com.shodh.code.service.checker.FloatChecker;
+import com.shodh.code.service.checker.OutputChecker;
+import com.shodh.code.service.checker.TokenChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Output comparison for a matching answer (the worst case: everything has to be read). The
+// actual output uses CRLF line endings so normalization has real work to do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class OutputCheckBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    public int bytes;
+
+    private String expected;
+    private String actual;
+    private final OutputChecker exact = new ExactChecker();
+    private final OutputChecker tokens = new TokenChecker();
+    private final OutputChecker floats = new FloatChecker(1e-6);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(1);
+        StringBuilder e = new StringBuilder(bytes + 64);
+        StringBuilder a = new StringBuilder(bytes + 64);
+        while (e.length() < bytes) {
+            String line = rnd.nextInt(1_000_000) + " " + rnd.nextInt(1_000) + "." + rnd.nextInt(1_000);
+            e.append(line).append('\n');
+            a.append(line).append("\r\n");
+        }
+        expected = e.toString();
+        actual = a.toString();
+    }
+
+    // What the judge did before the streaming checkers: three copies per side, then equals.
+    @Benchmark
+    public boolean legacyNormalizeEquals() {
+        return normalize(actual).equals(normalize(expected));
+    }
+
+    @Benchmark
+    public boolean exactChecker() throws IOException {
+        return exact.matches(reader(expected), reader(actual));
+    }
+
+    @Benchmark
+    public boolean tokenChecker() throws IOException {
+        return tokens.matches(reader(expected), reader(actual));
+    }
+
+    @Benchmark
+    public boolean floatChecker() throws IOException {
+        return floats.matches(reader(expected), reader(actual));
+    }
+
+    // the judge reads both sides through BufferedReaders over the files
+    private static Reader reader(String s) {
+        return new BufferedReader(new StringReader(s));
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().replace("\r\n", "\n").replace("\r", "\n");
+    }
+}
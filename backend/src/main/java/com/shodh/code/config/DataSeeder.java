@@ -7,6 +7,7 @@ import com.shodh.code.repository.ContestRepository;
 import com.shodh.code.repository.ProblemRepository;
 import com.shodh.code.repository.UserRepository;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
@@ -14,6 +15,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Component
+@ConditionalOnProperty(name = "api.enabled", havingValue = "true", matchIfMissing = true)
 public class DataSeeder implements CommandLineRunner {
     private final ContestRepository contestRepository;
     private final ProblemRepository problemRepository;
@@ -2,29 +2,41 @@ package com.shodh.code.controller;
 
 import com.shodh.code.dto.ContestDetailsDto;
 import com.shodh.code.dto.LeaderboardEntryDto;
+import com.shodh.code.dto.LeaderboardRankDto;
 import com.shodh.code.dto.ProblemDto;
 import com.shodh.code.model.Contest;
 import com.shodh.code.model.LeaderboardEntry;
-import com.shodh.code.model.Problem;
 import com.shodh.code.service.ContestService;
+import com.shodh.code.service.EventStreamService;
+import com.shodh.code.service.LeaderboardService;
+import com.shodh.code.util.ETags;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnProperty(name = "api.enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping("/api/contests")
 @RequiredArgsConstructor
 public class ContestController {
     private final ContestService contestService;
+    private final EventStreamService eventStreamService;
+    private final LeaderboardService leaderboardService;
 
     @PostMapping
     public ResponseEntity<Contest> createContest(@RequestBody Contest contest) {
@@ -39,32 +51,81 @@ public class ContestController {
     }
 
     @GetMapping("/{contestId}")
-    public ResponseEntity<ContestDetailsDto> getContest(@PathVariable("contestId") String contestId) {
+    public ResponseEntity<ContestDetailsDto> getContest(@PathVariable("contestId") String contestId, WebRequest request) {
         Optional<Contest> contestOpt = contestService.getById(contestId);
         if (contestOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         Contest contest = contestOpt.get();
-        List<Problem> problems = contestService.getProblems(contestId);
-        List<ProblemDto> problemDtos = problems.stream()
-                .map(p -> new ProblemDto(p.getId(), p.getTitle(), p.getDescription()))
-                .toList();
+        List<ProblemDto> problems = contestService.getProblems(contestId);
+        // both come from the in-process caches, so a repeat poll is answered without touching Mongo
+        if (request.checkNotModified(ETags.of(contest, problems))) {
+            return null;
+        }
         ContestDetailsDto dto = new ContestDetailsDto(
                 contest.getId(),
                 contest.getName(),
                 contest.getStartTime(),
                 contest.getEndTime(),
-                problemDtos
+                problems
         );
         return ResponseEntity.ok(dto);
     }
 
     @GetMapping("/{contestId}/leaderboard")
-    public ResponseEntity<List<LeaderboardEntryDto>> getLeaderboard(@PathVariable("contestId") String contestId) {
-        List<LeaderboardEntry> entries = contestService.getLeaderboard(contestId);
+    public ResponseEntity<List<LeaderboardEntryDto>> getLeaderboard(@PathVariable("contestId") String contestId,
+                                                                    @RequestParam(name = "offset", defaultValue = "0") int offset,
+                                                                    @RequestParam(name = "limit", required = false) Integer limit,
+                                                                    WebRequest request) {
+        if (offset < 0 || (limit != null && limit <= 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (contestService.getById(contestId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        // in-memory boards carry a version, so an unchanged board is a 304 before any page is built
+        String version = contestService.getLeaderboardVersion(contestId);
+        if (version != null && request.checkNotModified(ETags.of(contestId, version, offset, limit))) {
+            return null;
+        }
+        List<LeaderboardEntry> entries = limit == null && offset == 0
+                ? contestService.getLeaderboard(contestId)
+                : contestService.getLeaderboardPage(contestId, offset, limit == null ? Integer.MAX_VALUE : limit);
+        if (version == null && request.checkNotModified(ETags.of(entries))) {
+            return null;
+        }
         List<LeaderboardEntryDto> dtos = entries.stream()
                 .map(e -> new LeaderboardEntryDto(e.getUserId(), e.getUsername(), e.getTotalScore()))
                 .toList();
         return ResponseEntity.ok(dtos);
     }
+
+    @GetMapping(path = "/{contestId}/leaderboard/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLeaderboard(@PathVariable("contestId") String contestId,
+                                                        @RequestParam(name = "limit", defaultValue = "100") int limit,
+                                                        @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (contestService.getById(contestId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        // pushes hold the top sse.leaderboard-push-size entries, so that's the most a stream can follow
+        int size = Math.min(limit, leaderboardService.getPushSize());
+        return ResponseEntity.ok(eventStreamService.subscribe(LeaderboardService.topic(contestId), lastEventId, "leaderboard",
+                () -> contestService.getLeaderboardPage(contestId, 0, size), LeaderboardService.firstEntries(size)));
+    }
+
+    @GetMapping("/{contestId}/leaderboard/users/{userId}")
+    public ResponseEntity<LeaderboardRankDto> getUserRank(@PathVariable("contestId") String contestId,
+                                                          @PathVariable("userId") String userId) {
+        if (contestService.getById(contestId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return contestService.getRank(contestId, userId)
+                .map(r -> new LeaderboardRankDto(r.entry().getUserId(), r.entry().getUsername(),
+                        r.entry().getTotalScore(), r.rank(), r.participants()))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
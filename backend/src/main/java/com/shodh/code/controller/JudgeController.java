@@ -0,0 +1,32 @@
+package com.shodh.code.controller;
+
+import com.shodh.code.dto.CacheStatsDto;
+import com.shodh.code.dto.JudgeStatsDto;
+import com.shodh.code.service.CacheRegistry;
+import com.shodh.code.service.JudgeDispatcher;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/judge")
+@RequiredArgsConstructor
+public class JudgeController {
+    private final JudgeDispatcher judgeDispatcher;
+    private final CacheRegistry cacheRegistry;
+
+    @GetMapping("/stats")
+    public ResponseEntity<JudgeStatsDto> getStats() {
+        return ResponseEntity.ok(judgeDispatcher.getStats());
+    }
+
+    // Hit/miss counters of the in-process caches (problems, contests, compiled classes)
+    @GetMapping("/caches")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        return ResponseEntity.ok(cacheRegistry.stats());
+    }
+}
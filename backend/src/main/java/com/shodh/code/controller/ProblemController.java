@@ -1,21 +1,30 @@
 package com.shodh.code.controller;
 
+import com.shodh.code.dto.ProblemDto;
+import com.shodh.code.dto.ProblemRunStatsDto;
+import com.shodh.code.dto.TestSetDto;
 import com.shodh.code.model.Problem;
 import com.shodh.code.service.ProblemService;
+import com.shodh.code.service.SubmissionService;
+import com.shodh.code.util.ETags;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnProperty(name = "api.enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping("/api/problems")
 @RequiredArgsConstructor
 public class ProblemController {
 
     private final ProblemService problemService;
+    private final SubmissionService submissionService;
 
     // Create a new problem (POST /api/problems)
     @PostMapping
@@ -24,10 +33,13 @@ public class ProblemController {
         return ResponseEntity.created(URI.create("/api/problems/" + saved.getId())).body(saved);
     }
 
-    // Get all problems
+    // Get all problems (id, title, description only)
     @GetMapping
-    public ResponseEntity<List<Problem>> getAllProblems() {
-        List<Problem> problems = problemService.getAll();
+    public ResponseEntity<List<ProblemDto>> getAllProblems(WebRequest request) {
+        List<ProblemDto> problems = problemService.getAllSummaries();
+        if (request.checkNotModified(ETags.of(problems))) {
+            return null;
+        }
         return ResponseEntity.ok(problems);
     }
 
@@ -37,4 +49,36 @@ public class ProblemController {
         Optional<Problem> problemOpt = problemService.getById(id);
         return problemOpt.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    // Update problem metadata (test cases go through /tests)
+    @PutMapping("/{id}")
+    public ResponseEntity<Problem> updateProblem(@PathVariable("id") String id, @RequestBody Problem problem) {
+        return problemService.update(id, problem)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteProblem(@PathVariable("id") String id) {
+        problemService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Percentiles of per-test wall time, CPU time and peak memory over recent submissions
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ProblemRunStatsDto> getRunStats(@PathVariable("id") String id,
+                                                          @RequestParam(name = "sample", defaultValue = "500") int sample) {
+        if (problemService.getById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(submissionService.getRunStats(id, Math.max(1, Math.min(sample, 5000))));
+    }
+
+    // Replace a problem's test cases (bumps its testSetVersion)
+    @PutMapping("/{id}/tests")
+    public ResponseEntity<Problem> replaceTests(@PathVariable("id") String id, @RequestBody TestSetDto tests) {
+        return problemService.replaceTests(id, tests.getInputTestCases(), tests.getOutputTestCases())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
@@ -1,36 +1,64 @@
 package com.shodh.code.controller;
 
+import com.shodh.code.dto.ProblemDto;
 import com.shodh.code.dto.SubmissionCreatedDto;
+import com.shodh.code.dto.SubmissionPageDto;
 import com.shodh.code.dto.SubmissionRequestDto;
 import com.shodh.code.dto.SubmissionStatusDto;
-import com.shodh.code.model.Problem;
 import com.shodh.code.model.Submission;
-import com.shodh.code.repository.ProblemRepository;
-import com.shodh.code.service.CodeExecutionService;
+import com.shodh.code.model.TestResult;
+import com.shodh.code.service.AdminAccess;
+import com.shodh.code.service.ContestService;
+import com.shodh.code.service.EventStreamService;
+import com.shodh.code.service.JudgeDispatcher;
+import com.shodh.code.service.SubmissionRateLimiter;
 import com.shodh.code.service.SubmissionService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnProperty(name = "api.enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping("/api/submissions")
 @RequiredArgsConstructor
 public class SubmissionController {
     private final SubmissionService submissionService;
-    private final ProblemRepository problemRepository;
-    private final CodeExecutionService codeExecutionService;
+    private final ContestService contestService;
+    private final JudgeDispatcher judgeDispatcher;
+    private final SubmissionRateLimiter submissionRateLimiter;
+    private final EventStreamService eventStreamService;
+    private final AdminAccess adminAccess;
 
     @PostMapping
-    public ResponseEntity<SubmissionCreatedDto> createSubmission(@RequestBody SubmissionRequestDto body) {
+    public ResponseEntity<SubmissionCreatedDto> createSubmission(@RequestBody SubmissionRequestDto body, HttpServletRequest request) {
+        long retryAfter = submissionRateLimiter.acquire(body.getUserId(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            // this user or address is over its submission rate
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build();
+        }
+
         Submission s = new Submission();
         s.setUserId(body.getUserId());
         s.setProblemId(body.getProblemId());
@@ -41,20 +69,67 @@ public class SubmissionController {
         s.setScore(null);
         s.setCreatedAt(Instant.now());
 
-        Submission saved = submissionService.create(s);
+        if (!judgeDispatcher.admit()) {
+            // Judge queue is full: ask the client to back off, without charging its rate limit
+            submissionRateLimiter.refund(body.getUserId(), request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(judgeDispatcher.getRetryAfterSeconds()))
+                    .build();
+        }
 
-        // Fire-and-forget execution
-        new Thread(() -> {
-            try {
-                Optional<Problem> p = problemRepository.findById(saved.getProblemId());
-                p.ifPresent(problem -> codeExecutionService.runAndEvaluate(saved, problem));
-            } catch (Exception ignored) {}
-        }).start();
+        // stored as Pending, which is what queues it
+        Submission saved = submissionService.create(s);
+        judgeDispatcher.submit(saved);
 
         return ResponseEntity.created(URI.create("/api/submissions/" + saved.getId()))
                 .body(new SubmissionCreatedDto(saved.getId()));
     }
 
+    // Submission history (contestant history, admin review), newest first, a keyset page at a time:
+    // pass nextCursor back as cursor. Filters combine; code only with includeCode=true, which needs
+    // the admin token.
+    @GetMapping
+    public ResponseEntity<SubmissionPageDto> listSubmissions(@RequestParam(name = "userId", required = false) String userId,
+                                                             @RequestParam(name = "problemId", required = false) String problemId,
+                                                             @RequestParam(name = "contestId", required = false) String contestId,
+                                                             @RequestParam(name = "cursor", required = false) String cursor,
+                                                             @RequestParam(name = "limit", defaultValue = "50") int limit,
+                                                             @RequestParam(name = "includeCode", defaultValue = "false") boolean includeCode,
+                                                             @RequestHeader(name = AdminAccess.HEADER, required = false) String adminToken) {
+        if (includeCode && !adminAccess.allows(adminToken)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(submissionService.getHistory(userId, problemIds(problemId, contestId), cursor, limit, includeCode));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Same filters, every matching submission as NDJSON, streamed from a Mongo cursor. Admin token only.
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSubmissions(@RequestParam(name = "userId", required = false) String userId,
+                                                                   @RequestParam(name = "problemId", required = false) String problemId,
+                                                                   @RequestParam(name = "contestId", required = false) String contestId,
+                                                                   @RequestParam(name = "includeCode", defaultValue = "false") boolean includeCode,
+                                                                   @RequestHeader(name = AdminAccess.HEADER, required = false) String adminToken) {
+        if (!adminAccess.allows(adminToken)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Collection<String> problemIds = problemIds(problemId, contestId);
+        StreamingResponseBody body = out -> submissionService.export(userId, problemIds, includeCode, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // null = any problem; a contest narrows to its problems
+    private List<String> problemIds(String problemId, String contestId) {
+        if (contestId == null) return problemId == null ? null : List.of(problemId);
+        return contestService.getProblems(contestId).stream()
+                .map(ProblemDto::getId)
+                .filter(id -> problemId == null || id.equals(problemId))
+                .toList();
+    }
+
     @GetMapping("/{submissionId}")
     public ResponseEntity<SubmissionStatusDto> getSubmission(@PathVariable("submissionId") String submissionId) {
         Optional<Submission> sOpt = submissionService.getById(submissionId);
@@ -70,4 +145,25 @@ public class SubmissionController {
         );
         return ResponseEntity.ok(dto);
     }
+
+    // Per-test verdicts with wall time, CPU time and peak memory
+    @GetMapping("/{submissionId}/tests")
+    public ResponseEntity<List<TestResult>> getTestResults(@PathVariable("submissionId") String submissionId) {
+        return submissionService.getById(submissionId)
+                .map(s -> s.getTestResults() == null ? List.<TestResult>of() : s.getTestResults())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Pushes status transitions (Pending -> Running -> verdict) instead of having the client poll.
+    @GetMapping(path = "/{submissionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSubmission(@PathVariable("submissionId") String submissionId,
+                                                       @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        if (submissionService.getById(submissionId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = eventStreamService.subscribe(SubmissionService.topic(submissionId), lastEventId, "status",
+                () -> submissionService.getById(submissionId).map(SubmissionService::toStatusDto).orElse(null));
+        return ResponseEntity.ok(emitter);
+    }
 }
@@ -3,6 +3,7 @@ package com.shodh.code.controller;
 import com.shodh.code.model.User;
 import com.shodh.code.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,6 +11,7 @@ import java.net.URI;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnProperty(name = "api.enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
 public class UserController {
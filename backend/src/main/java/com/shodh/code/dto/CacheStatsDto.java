@@ -0,0 +1,17 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDto {
+    private String name;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
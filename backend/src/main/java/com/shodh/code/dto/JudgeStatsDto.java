@@ -0,0 +1,24 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JudgeStatsDto {
+    private String nodeId;
+    private int workers;
+    private int activeWorkers;
+    // Pending submissions across the cluster
+    private int queueDepth;
+    private int queueCapacity;
+    private long completed;
+    private long rejected;
+    // claimed again after another node's lease expired (or this one's shutdown)
+    private long redelivered;
+    private long avgWaitMillis;
+    private long lastWaitMillis;
+    private long maxWaitMillis;
+}
@@ -0,0 +1,16 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardRankDto {
+    private String userId;
+    private String username;
+    private Integer totalScore;
+    private int rank;
+    private int participants;
+}
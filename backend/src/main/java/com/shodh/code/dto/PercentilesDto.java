@@ -0,0 +1,17 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PercentilesDto {
+    private int count;
+    private long p50;
+    private long p90;
+    private long p95;
+    private long p99;
+    private long max;
+}
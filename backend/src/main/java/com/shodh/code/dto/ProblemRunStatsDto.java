@@ -0,0 +1,17 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProblemRunStatsDto {
+    private String problemId;
+    // test runs the percentiles were computed from (tests of the most recent judged submissions)
+    private int sampledTests;
+    private PercentilesDto wallMillis;
+    private PercentilesDto cpuMillis;
+    private PercentilesDto peakMemoryKb;
+}
@@ -0,0 +1,16 @@
+package com.shodh.code.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionPageDto {
+    private List<SubmissionSummaryDto> items;
+    // pass back as `cursor` for the next (older) page; null on the last page
+    private String nextCursor;
+}
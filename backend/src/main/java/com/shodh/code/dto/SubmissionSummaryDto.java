@@ -0,0 +1,25 @@
+package com.shodh.code.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionSummaryDto {
+    private String id;
+    private String userId;
+    private String problemId;
+    private String language;
+    private String status;
+    private String result;
+    private Integer score;
+    private Instant createdAt;
+    // only with includeCode=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String code;
+}
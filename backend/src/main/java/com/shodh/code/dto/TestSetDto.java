@@ -0,0 +1,11 @@
+package com.shodh.code.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TestSetDto {
+    private List<String> inputTestCases;
+    private List<String> outputTestCases;
+}
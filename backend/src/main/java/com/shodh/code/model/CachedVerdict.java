@@ -0,0 +1,22 @@
+package com.shodh.code.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+// Final verdict for (problemId, testSetVersion, language, codeHash), reused for identical resubmissions.
+@Document(collection = "verdicts")
+@Data
+public class CachedVerdict {
+    @Id
+    private String id;
+    private String status;
+    private String result;
+    private Integer score;
+    // per-test outcomes of the run that produced the verdict (null for compile errors)
+    private List<TestResult> testResults;
+    private Instant createdAt;
+}
@@ -0,0 +1,18 @@
+package com.shodh.code.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Submission source text, stored once per distinct content (id = SHA-256 of the code).
+@Document(collection = "code_blobs")
+@Data
+public class CodeBlob {
+    @Id
+    private String id;
+    private String code;
+    private Integer size;
+    private Instant createdAt;
+}
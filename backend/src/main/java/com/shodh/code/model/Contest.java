@@ -14,4 +14,6 @@ public class Contest {
     private String name;
     private Instant startTime;
     private Instant endTime;
+    // share of judge capacity relative to other contests with queued submissions (null = 1)
+    private Integer judgeWeight;
 }
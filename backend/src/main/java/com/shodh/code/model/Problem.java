@@ -2,6 +2,7 @@ package com.shodh.code.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
@@ -13,8 +14,20 @@ public class Problem {
     private String id;
     private String title;
     private String description;
+    // Accepted on create/import only; TestDataService moves them into GridFS and clears them,
+    // leaving testSet as the manifest (problems stay small no matter how big the tests are).
     private List<String> inputTestCases;
     private List<String> outputTestCases;
+    private List<TestCaseRef> testSet;
+    @Indexed
     private String contestId;
     private Integer maxScore = 100;
+    // bumped whenever the test set changes so cached verdicts for the old tests stop matching
+    private Integer testSetVersion = 1;
+    // binary-verdict problems: stop judging at the first failing test
+    private Boolean failFast = false;
+    // output comparison: "exact" (trimmed, newline-normalized), "tokens" or "float"
+    private String checker = "exact";
+    // absolute/relative tolerance for the "float" checker
+    private Double checkerTolerance;
 }
@@ -2,21 +2,43 @@ package com.shodh.code.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.List;
 
 @Document(collection = "submissions")
+@CompoundIndex(name = "problem_user_score", def = "{'problemId': 1, 'userId': 1, 'score': -1}")
+// history pages (newest first, _id breaks ties) and recent test results per problem
+@CompoundIndex(name = "problem_created_id", def = "{'problemId': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "user_created_id", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "created_id", def = "{'createdAt': -1, '_id': -1}")
+// judge queue: oldest claimable first, and the change feed API nodes poll
+@CompoundIndex(name = "status_created", def = "{'status': 1, 'createdAt': 1}")
+@CompoundIndex(name = "updated_id", def = "{'updatedAt': 1, '_id': 1}")
 @Data
 public class Submission {
     @Id
     private String id;
     private String userId;
     private String problemId;
+    // inline source for legacy records; new submissions keep it in code_blobs under codeHash
     private String code;
+    private String codeHash;
     private String language;
     private String status;
     private String result;
     private Integer score;
     private Instant createdAt;
+    // last status change (not touched by lease heartbeats)
+    private Instant updatedAt;
+    // judge queue lease: the node judging it and until when; an expired lease makes it claimable again
+    private String leaseOwner;
+    private Instant leaseExpiresAt;
+    private Integer attempts;
+    // the user had already submitted to this problem; scheduled behind first attempts
+    private Boolean resubmission;
+    // per-test verdict, wall/CPU time and peak memory, written with the final verdict
+    private List<TestResult> testResults;
 }
@@ -0,0 +1,24 @@
+package com.shodh.code.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+// One status transition of a submission, written as a $set of just these fields.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionStatusChange {
+    private String id;
+    private String status;
+    private String result;
+    // null = leave as is
+    private Integer score;
+    private List<TestResult> testResults;
+    private Instant at;
+    // node whose lease the verdict is written under; the write is refused once someone else holds it
+    private String leaseOwner;
+}
@@ -0,0 +1,16 @@
+package com.shodh.code.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One entry of a problem's test-set manifest: GridFS files named by the sha256 of their content.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestCaseRef {
+    private String inputHash;
+    private String outputHash;
+    private long inputSize;
+    private long outputSize;
+}
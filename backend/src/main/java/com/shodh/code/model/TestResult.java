@@ -0,0 +1,19 @@
+package com.shodh.code.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome and resource usage of one test case run; cpuMillis/peakMemoryKb are null when the
+// sandbox couldn't measure them.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestResult {
+    private int index;
+    private String verdict;
+    private int exitCode;
+    private long wallMillis;
+    private Long cpuMillis;
+    private Long peakMemoryKb;
+}
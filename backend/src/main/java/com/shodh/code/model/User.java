@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Map;
+
 @Document(collection = "users")
 @Data
 public class User {
@@ -12,4 +14,6 @@ public class User {
     private String username;
     private Integer totalScore;
     private Integer score = 0; 
+    // problemId -> best score; totalScore is the sum of these, maintained atomically by UserService
+    private Map<String, Integer> bestScores;
 }
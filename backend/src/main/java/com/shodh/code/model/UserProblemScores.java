@@ -0,0 +1,17 @@
+package com.shodh.code.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserProblemScores {
+    private String userId;
+    private String username;
+    // problemId -> best score
+    private Map<String, Integer> best;
+}
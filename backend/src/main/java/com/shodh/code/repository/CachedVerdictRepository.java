@@ -0,0 +1,7 @@
+package com.shodh.code.repository;
+
+import com.shodh.code.model.CachedVerdict;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface CachedVerdictRepository extends MongoRepository<CachedVerdict, String> {
+}
@@ -0,0 +1,7 @@
+package com.shodh.code.repository;
+
+import com.shodh.code.model.CodeBlob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface CodeBlobRepository extends MongoRepository<CodeBlob, String> {
+}
@@ -1,10 +1,19 @@
 package com.shodh.code.repository;
 
+import com.shodh.code.dto.ProblemDto;
 import com.shodh.code.model.Problem;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.util.List;
 
 public interface ProblemRepository extends MongoRepository<Problem, String> {
     List<Problem> findByContestId(String contestId);
+
+    // Projections for listings: only id/title/description leave Mongo, never the test manifest
+    @Query(value = "{ 'contestId': ?0 }", fields = "{ 'title': 1, 'description': 1 }")
+    List<ProblemDto> findSummariesByContestId(String contestId);
+
+    @Query(value = "{}", fields = "{ 'title': 1, 'description': 1 }")
+    List<ProblemDto> findAllSummaries();
 }
@@ -5,9 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
 
-public interface SubmissionRepository extends MongoRepository<Submission, String> {
-    List<Submission> findByUserId(String userId);
-    List<Submission> findByProblemId(String problemId);
-    List<Submission> findByProblemIdIn(List<String> problemIds);
+public interface SubmissionRepository extends MongoRepository<Submission, String>, SubmissionRepositoryCustom {
     List<Submission> findByProblemIdAndUserId(String problemId, String userId);
+    boolean existsByProblemIdAndUserId(String problemId, String userId);
 }
@@ -0,0 +1,63 @@
+package com.shodh.code.repository;
+
+import com.shodh.code.model.LeaderboardEntry;
+import com.shodh.code.model.Submission;
+import com.shodh.code.model.SubmissionStatusChange;
+import com.shodh.code.model.TestResult;
+import com.shodh.code.model.UserProblemScores;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface SubmissionRepositoryCustom {
+    // Sum of best score per problem for each user, sorted desc, usernames joined in; only rows leave Mongo.
+    List<LeaderboardEntry> aggregateLeaderboard(List<String> problemIds, int offset, int limit);
+
+    // Best score per (user, problem), grouped by user, for rebuilding in-memory boards.
+    List<UserProblemScores> aggregateBestScores(List<String> problemIds);
+
+    // Test results of the most recent judged submissions to a problem, flattened to one row per test.
+    List<TestResult> findRecentTestResults(String problemId, int submissionLimit);
+
+    // Judge queue: atomically moves the oldest Pending submission (or one whose lease expired) to
+    // Running under owner's lease; null when there is nothing to claim.
+    Submission claimNext(String owner, Instant now, Instant leaseUntil);
+
+    // The oldest claimable submissions (ids and scheduling fields only), for a fair-share pick.
+    List<Submission> findClaimable(Instant now, int limit);
+
+    // Claims one specific submission; null if it's no longer claimable (e.g. another node got it).
+    Submission claim(String id, String owner, Instant now, Instant leaseUntil);
+
+    // Heartbeat: extends the leases owner still holds on these submissions.
+    long extendLeases(Collection<String> ids, String owner, Instant leaseUntil);
+
+    // Hands an unfinished submission back to the queue (e.g. on shutdown), if owner still holds it.
+    boolean requeue(String id, String owner);
+
+    // Status write as a $set of the changed fields, applied only if it moves the submission forward
+    // (Pending -> Running -> verdict), so a late or repeated write can't undo a verdict. False if refused.
+    boolean applyStatus(SubmissionStatusChange change);
+
+    // The same for many submissions in one unordered bulk write; returns the ids that were applied.
+    Set<String> applyStatuses(List<SubmissionStatusChange> changes);
+
+    // Pending submissions, counting at most `limit` (0 = no limit).
+    long countQueued(int limit);
+
+    // Submissions whose status changed after the (updatedAt, id) keyset (afterId null: any change after
+    // `since`), oldest change first with id breaking ties, without code or test results.
+    List<Submission> findUpdatedSince(Instant since, String afterId, int limit);
+
+    // Submissions of a user and/or to some problems (null = any), newest first, starting after the
+    // (createdAt, id) keyset of the previous page's last row. Leaves out test results, and code
+    // unless includeCode.
+    List<Submission> findHistory(String userId, Collection<String> problemIds, Instant beforeCreatedAt, String beforeId,
+                                 int limit, boolean includeCode);
+
+    // The same rows and order as findHistory, read through a cursor; close the stream when done.
+    Stream<Submission> streamHistory(String userId, Collection<String> problemIds, boolean includeCode);
+}
@@ -0,0 +1,279 @@
+package com.shodh.code.repository;
+
+import com.shodh.code.model.LeaderboardEntry;
+import com.shodh.code.model.Submission;
+import com.shodh.code.model.SubmissionStatusChange;
+import com.shodh.code.model.TestResult;
+import com.shodh.code.model.UserProblemScores;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class SubmissionRepositoryImpl implements SubmissionRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<LeaderboardEntry> aggregateLeaderboard(List<String> problemIds, int offset, int limit) {
+        List<AggregationOperation> stages = new ArrayList<>(bestPerUserAndProblem(problemIds));
+        stages.add(stage(new Document("$group", new Document("_id", "$_id.u").append("total", new Document("$sum", "$best")))));
+        stages.add(stage(new Document("$sort", new Document("total", -1).append("_id", 1))));
+        if (offset > 0) stages.add(stage(new Document("$skip", offset)));
+        stages.add(stage(new Document("$limit", limit)));
+        stages.addAll(lookupUsername());
+
+        List<LeaderboardEntry> out = new ArrayList<>();
+        for (Document d : aggregate(stages)) {
+            out.add(new LeaderboardEntry(d.getString("_id"), d.getString("username"), d.getInteger("total", 0)));
+        }
+        return out;
+    }
+
+    @Override
+    public List<UserProblemScores> aggregateBestScores(List<String> problemIds) {
+        List<AggregationOperation> stages = new ArrayList<>(bestPerUserAndProblem(problemIds));
+        stages.add(stage(new Document("$group", new Document("_id", "$_id.u")
+                .append("problems", new Document("$push", new Document("p", "$_id.p").append("best", "$best"))))));
+        stages.addAll(lookupUsername());
+
+        List<UserProblemScores> out = new ArrayList<>();
+        for (Document d : aggregate(stages)) {
+            Map<String, Integer> best = new HashMap<>();
+            for (Document p : d.getList("problems", Document.class)) {
+                best.put(p.getString("p"), p.getInteger("best", 0));
+            }
+            out.add(new UserProblemScores(d.getString("_id"), d.getString("username"), best));
+        }
+        return out;
+    }
+
+    @Override
+    public List<TestResult> findRecentTestResults(String problemId, int submissionLimit) {
+        List<AggregationOperation> stages = List.of(
+                stage(new Document("$match", new Document("problemId", problemId)
+                        .append("testResults.0", new Document("$exists", true)))),
+                stage(new Document("$sort", new Document("createdAt", -1))),
+                stage(new Document("$limit", submissionLimit)),
+                stage(new Document("$project", new Document("_id", 0).append("testResults", 1))),
+                stage(new Document("$unwind", "$testResults")),
+                stage(new Document("$replaceRoot", new Document("newRoot", "$testResults"))));
+        String collection = mongoTemplate.getCollectionName(Submission.class);
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), collection, TestResult.class).getMappedResults();
+    }
+
+    @Override
+    public Submission claimNext(String owner, Instant now, Instant leaseUntil) {
+        Query query = new Query(claimable(now)).with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        return mongoTemplate.findAndModify(query, claim(owner, now, leaseUntil), FindAndModifyOptions.options().returnNew(true), Submission.class);
+    }
+
+    @Override
+    public List<Submission> findClaimable(Instant now, int limit) {
+        Query query = new Query(claimable(now)).with(Sort.by(Sort.Direction.ASC, "createdAt")).limit(limit);
+        query.fields().include("userId", "problemId", "createdAt", "attempts", "resubmission");
+        return mongoTemplate.find(query, Submission.class);
+    }
+
+    @Override
+    public Submission claim(String id, String owner, Instant now, Instant leaseUntil) {
+        Query query = new Query(new Criteria().andOperator(Criteria.where("_id").is(id), claimable(now)));
+        return mongoTemplate.findAndModify(query, claim(owner, now, leaseUntil), FindAndModifyOptions.options().returnNew(true), Submission.class);
+    }
+
+    // Pending, or Running without a live lease: its node died (or it predates leases)
+    private static Criteria claimable(Instant now) {
+        return new Criteria().orOperator(
+                Criteria.where("status").is("Pending"),
+                Criteria.where("status").is("Running").and("leaseExpiresAt").not().gte(now));
+    }
+
+    private static Update claim(String owner, Instant now, Instant leaseUntil) {
+        return new Update()
+                .set("status", "Running")
+                .set("leaseOwner", owner)
+                .set("leaseExpiresAt", leaseUntil)
+                .set("updatedAt", now)
+                .inc("attempts", 1);
+    }
+
+    @Override
+    public long extendLeases(Collection<String> ids, String owner, Instant leaseUntil) {
+        if (ids.isEmpty()) return 0;
+        Query query = new Query(Criteria.where("_id").in(ids).and("leaseOwner").is(owner).and("status").is("Running"));
+        return mongoTemplate.updateMulti(query, new Update().set("leaseExpiresAt", leaseUntil), Submission.class).getModifiedCount();
+    }
+
+    @Override
+    public boolean requeue(String id, String owner) {
+        Query query = new Query(Criteria.where("_id").is(id).and("leaseOwner").is(owner).and("status").is("Running"));
+        Update update = new Update().set("status", "Pending").unset("leaseOwner").unset("leaseExpiresAt")
+                .set("updatedAt", Instant.now()).inc("attempts", -1); // not its fault, doesn't count toward max-attempts
+        return mongoTemplate.updateFirst(query, update, Submission.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean applyStatus(SubmissionStatusChange change) {
+        return mongoTemplate.updateFirst(statusGuard(change), statusUpdate(change), Submission.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public Set<String> applyStatuses(List<SubmissionStatusChange> changes) {
+        Set<String> ids = new HashSet<>();
+        if (changes.isEmpty()) return ids;
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Submission.class);
+        for (SubmissionStatusChange c : changes) {
+            ops.updateOne(statusGuard(c), statusUpdate(c));
+            ids.add(c.getId());
+        }
+        if (ops.execute().getModifiedCount() == changes.size()) return ids;
+
+        // the guard refused some (rare: a submission judged twice); read back which ones went through
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("status", "result", "leaseOwner");
+        Map<String, Submission> stored = new HashMap<>();
+        for (Submission s : mongoTemplate.find(query, Submission.class)) stored.put(s.getId(), s);
+        Set<String> applied = new HashSet<>();
+        for (SubmissionStatusChange c : changes) {
+            Submission s = stored.get(c.getId());
+            if (s != null && c.getStatus().equals(s.getStatus()) && Objects.equals(c.getResult(), s.getResult())
+                    && (c.getLeaseOwner() == null || c.getLeaseOwner().equals(s.getLeaseOwner()))) applied.add(c.getId());
+        }
+        return applied;
+    }
+
+    // A verdict from a judge also needs its lease still in place: once the lease ran out and another
+    // node claimed the submission, only that node's verdict counts.
+    private static Query statusGuard(SubmissionStatusChange change) {
+        Criteria criteria = Criteria.where("_id").is(change.getId()).and("status").in(earlierThan(change.getStatus()));
+        if (change.getLeaseOwner() != null && isVerdict(change.getStatus())) criteria.and("leaseOwner").is(change.getLeaseOwner());
+        return new Query(criteria);
+    }
+
+    private static boolean isVerdict(String status) {
+        return !"Pending".equals(status) && !"Running".equals(status);
+    }
+
+    // Pending -> Running -> verdict; going back to Pending is requeue()'s job, under a lease check
+    private static List<String> earlierThan(String status) {
+        return switch (status) {
+            case "Pending" -> List.of();
+            case "Running" -> Arrays.asList(null, "Pending");
+            default -> Arrays.asList(null, "Pending", "Running");
+        };
+    }
+
+    private static Update statusUpdate(SubmissionStatusChange change) {
+        Update update = new Update()
+                .set("status", change.getStatus())
+                .set("result", change.getResult())
+                .set("updatedAt", change.getAt());
+        if (change.getScore() != null) update.set("score", change.getScore());
+        if (change.getTestResults() != null) update.set("testResults", change.getTestResults());
+        return update;
+    }
+
+    @Override
+    public long countQueued(int limit) {
+        Query query = new Query(Criteria.where("status").is("Pending"));
+        if (limit > 0) query.limit(limit);
+        return mongoTemplate.count(query, Submission.class);
+    }
+
+    @Override
+    public List<Submission> findUpdatedSince(Instant since, String afterId, int limit) {
+        Criteria after = afterId == null ? Criteria.where("updatedAt").gt(since) : new Criteria().orOperator(
+                Criteria.where("updatedAt").gt(since),
+                Criteria.where("updatedAt").is(since).and("_id").gt(afterId));
+        Query query = new Query(after)
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt", "_id"))
+                .limit(limit);
+        query.fields().exclude("code", "testResults");
+        return mongoTemplate.find(query, Submission.class);
+    }
+
+    @Override
+    public List<Submission> findHistory(String userId, Collection<String> problemIds, Instant beforeCreatedAt, String beforeId,
+                                        int limit, boolean includeCode) {
+        List<Criteria> filter = historyFilter(userId, problemIds);
+        if (beforeCreatedAt != null) {
+            // keyset: strictly older than the last row, or as old with a smaller id
+            filter.add(new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(beforeCreatedAt),
+                    Criteria.where("createdAt").is(beforeCreatedAt).and("_id").lt(beforeId)));
+        }
+        return mongoTemplate.find(history(filter, includeCode).limit(limit), Submission.class);
+    }
+
+    @Override
+    public Stream<Submission> streamHistory(String userId, Collection<String> problemIds, boolean includeCode) {
+        return mongoTemplate.stream(history(historyFilter(userId, problemIds), includeCode).cursorBatchSize(500), Submission.class);
+    }
+
+    private static List<Criteria> historyFilter(String userId, Collection<String> problemIds) {
+        List<Criteria> filter = new ArrayList<>();
+        if (userId != null) filter.add(Criteria.where("userId").is(userId));
+        if (problemIds != null) filter.add(Criteria.where("problemId").in(problemIds));
+        return filter;
+    }
+
+    // newest first with _id as tie-breaker; served by the user_created_id / problem_created_id / created_id indexes
+    private static Query history(List<Criteria> filter, boolean includeCode) {
+        Query query = new Query(filter.isEmpty() ? new Criteria() : new Criteria().andOperator(filter))
+                .with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id")));
+        query.fields().exclude("testResults");
+        if (!includeCode) query.fields().exclude("code");
+        return query;
+    }
+
+    // $match on problemIds + $group by (user, problem) with $max; served by the (problemId, userId, score) index.
+    private static List<AggregationOperation> bestPerUserAndProblem(List<String> problemIds) {
+        return List.of(
+                stage(new Document("$match", new Document("problemId", new Document("$in", problemIds))
+                        .append("userId", new Document("$ne", null)))),
+                stage(new Document("$group", new Document("_id", new Document("u", "$userId").append("p", "$problemId"))
+                        .append("best", new Document("$max", new Document("$ifNull", List.of("$score", 0))))))
+        );
+    }
+
+    // userId is stored as a string, users._id is an ObjectId; ids that don't convert fall back to "Unknown".
+    private static List<AggregationOperation> lookupUsername() {
+        return List.of(
+                stage(new Document("$addFields", new Document("uid", new Document("$convert",
+                        new Document("input", "$_id").append("to", "objectId").append("onError", null).append("onNull", null))))),
+                stage(new Document("$lookup", new Document("from", "users").append("localField", "uid")
+                        .append("foreignField", "_id").append("as", "user"))),
+                stage(new Document("$addFields", new Document("username", new Document("$ifNull",
+                        List.of(new Document("$arrayElemAt", List.of("$user.username", 0)), "Unknown"))))),
+                stage(new Document("$project", new Document("user", 0).append("uid", 0)))
+        );
+    }
+
+    private List<Document> aggregate(List<AggregationOperation> stages) {
+        String collection = mongoTemplate.getCollectionName(Submission.class);
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), collection, Document.class).getMappedResults();
+    }
+
+    private static AggregationOperation stage(Document d) {
+        return context -> d;
+    }
+}
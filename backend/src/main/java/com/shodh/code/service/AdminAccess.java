@@ -0,0 +1,25 @@
+package com.shodh.code.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Shared-secret check for admin-only API calls (submitted code, bulk export): the caller sends
+// api.admin-token in the X-Admin-Token header. With no token configured those calls are refused.
+@Component
+public class AdminAccess {
+    public static final String HEADER = "X-Admin-Token";
+
+    private final byte[] token;
+
+    public AdminAccess(@Value("${api.admin-token:}") String token) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean allows(String presented) {
+        if (token.length == 0 || presented == null) return false;
+        return MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,223 @@
+package com.shodh.code.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The sh script the process-based backends (docker, native) run for one batch, and the parsing of
+// what it leaves behind: results-<batch>.txt ("compile <rc> <ms>" then "test <i> <rc> <ms>" per
+// test), per-test cpu<i>.txt (shell `times` before/after: CPU of reaped children) and, depending on
+// the backend, mem<i>.txt (peak VmHWM sampled from /proc) or stats<i>.txt ("<cpu ms> <peak kB>"
+// read from the test's cgroup). Stream mode (streamedRun) runs one test per invocation instead.
+final class BatchScript {
+    static final int COMPILE_TIMEOUT_SECONDS = 20;
+    static final int TEST_TIMEOUT_SECONDS = 5;
+    // cap on every file a compile or test writes (outputs included): workspaces may sit on a tmpfs,
+    // i.e. in RAM. `ulimit -f` counts 512-byte blocks in sh.
+    static final long FILE_SIZE_LIMIT_BYTES = 64L * 1024 * 1024;
+
+    private BatchScript() {}
+
+    // runCommand may refer to the test index as $i; it runs with stdin/stdout/stderr redirected to
+    // input$i.txt / output$i.txt / error$i.txt by the script.
+    static String build(String workDir, String compile, String runCommand, List<Integer> tests, int batchNo,
+                        boolean failFast, boolean sampleRss) {
+        String resultsFile = resultsFile(batchNo);
+        StringBuilder script = new StringBuilder();
+        script.append("cd ").append(workDir).append('\n');
+        script.append(": > ").append(resultsFile).append('\n');
+        script.append(fileSizeLimit()).append('\n');
+        if (sampleRss) script.append(PEAK_RSS_SAMPLER);
+        if (compile != null) {
+            script.append("start=$(date +%s%N)\n");
+            script.append(compile).append(" > compile.log 2>&1\n");
+            script.append("rc=$?\n");
+            script.append("end=$(date +%s%N)\n");
+            script.append("echo \"compile $rc $(( (end - start) / 1000000 ))\" >> ").append(resultsFile).append('\n');
+            script.append("[ $rc -ne 0 ] && exit 0\n");
+        }
+        script.append("for i in");
+        for (int i : tests) script.append(' ').append(i);
+        script.append("; do\n");
+        script.append("  times > cpu$i.txt\n");
+        script.append("  start=$(date +%s%N)\n");
+        script.append("  timeout ").append(TEST_TIMEOUT_SECONDS).append(' ').append(runCommand)
+                .append(" < input$i.txt > output$i.txt 2> error$i.txt &\n");
+        script.append("  tpid=$!\n");
+        if (sampleRss) {
+            script.append("  sample_rss $tpid mem$i.txt &\n");
+            script.append("  spid=$!\n");
+        }
+        script.append("  wait $tpid\n");
+        script.append("  rc=$?\n");
+        script.append("  end=$(date +%s%N)\n");
+        // read before the sampler is reaped, so its own CPU isn't charged to the test
+        script.append("  times >> cpu$i.txt\n");
+        if (sampleRss) script.append("  kill $spid 2>/dev/null; wait $spid 2>/dev/null\n");
+        script.append("  echo \"test $i $rc $(( (end - start) / 1000000 ))\" >> ").append(resultsFile).append('\n');
+        if (failFast) script.append("  [ $rc -ne 0 ] && break\n");
+        script.append("done\n");
+        return script.toString();
+    }
+
+    // Stream mode: one test per invocation, stdin/stdout being the judge's pipes. The program's
+    // stderr is followed by a trailer: "@@judge <rc> <wall ms>" and the shell's `times` (line 2 =
+    // CPU of the program), which streamedResult strips off again.
+    static String streamedRun(String runCommand) {
+        return fileSizeLimit() + "; s=$(date +%s%N); timeout " + TEST_TIMEOUT_SECONDS + " " + runCommand + "; rc=$?; e=$(date +%s%N); "
+                + "echo \"@@judge $rc $(( (e - s) / 1000000 ))\" >&2; times >&2; exit $rc";
+    }
+
+    // Exit code and wall time as the sandbox measured them (the judge's own numbers when the run was
+    // killed before the trailer), plus cgroup stats<i>.txt when the backend wrote one.
+    static SandboxRunResult.TestRun streamedResult(Path dir, int test, ProcessRunner.ExecResult res, long wallMillis) throws IOException {
+        String log = res.output == null ? "" : res.output;
+        int exitCode = res.code;
+        Long cpu = null;
+        int marker = log.lastIndexOf("@@judge ");
+        if (res.code != -1 && marker >= 0) {
+            String[] lines = log.substring(marker).trim().split("\n");
+            String[] parts = lines[0].trim().split("\\s+");
+            if (parts.length == 3) {
+                exitCode = Integer.parseInt(parts[1]);
+                wallMillis = Long.parseLong(parts[2]);
+            }
+            if (lines.length >= 3) cpu = shellClockMillis(lines[2]);
+            log = log.substring(0, marker);
+        }
+        SandboxRunResult.TestRun t = new SandboxRunResult.TestRun(test, exitCode, wallMillis, null, log);
+        long[] cgroup = cgroupStats(dir.resolve("stats" + test + ".txt"));
+        t.cpuMillis = cgroup != null && cgroup[0] >= 0 ? Long.valueOf(cgroup[0]) : cpu;
+        t.peakMemoryKb = cgroup != null && cgroup[1] > 0 ? Long.valueOf(cgroup[1]) : null;
+        return t;
+    }
+
+    private static String fileSizeLimit() {
+        return "ulimit -f " + FILE_SIZE_LIMIT_BYTES / 512;
+    }
+
+    // Wall-clock budget for the whole invocation
+    static Duration budget(boolean compile, int tests) {
+        return Duration.ofSeconds((compile ? COMPILE_TIMEOUT_SECONDS : 0) + (long) tests * (TEST_TIMEOUT_SECONDS + 1) + 5);
+    }
+
+    static SandboxRunResult parse(Path dir, boolean compile, List<Integer> tests, int batchNo, boolean failFast,
+                                  ProcessRunner.ExecResult res) throws IOException {
+        SandboxRunResult result = new SandboxRunResult();
+        // a compile step that never reported back counts as failed
+        result.compileExitCode = compile ? -1 : 0;
+        Path compileLog = dir.resolve("compile.log");
+        if (compile && Files.exists(compileLog)) result.compileOutput = Files.readString(compileLog, StandardCharsets.UTF_8);
+        Map<Integer, long[]> reported = new HashMap<>();
+        Path results = dir.resolve(resultsFile(batchNo));
+        if (Files.exists(results)) {
+            for (String line : Files.readAllLines(results, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 3 && parts[0].equals("compile")) {
+                    result.compileExitCode = Integer.parseInt(parts[1]);
+                    result.compileMillis = Long.parseLong(parts[2]);
+                } else if (parts.length == 4 && parts[0].equals("test")) {
+                    reported.put(Integer.parseInt(parts[1]), new long[]{Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+                }
+            }
+        } else if (res.code != 0) {
+            // the session never got going (e.g. docker failure, container OOM-killed): that says
+            // nothing about the code, so it must not turn into a verdict
+            throw new IOException("sandbox session failed (exit " + res.code + "): " + (res.output == null ? "" : res.output));
+        }
+        if (!result.compiled()) return result;
+
+        for (int i : tests) {
+            long[] r = reported.get(i);
+            if (r == null && failFast && res.code != -1) break; // skipped after an earlier failure
+            // tests the script never reached (session killed) count as timed out
+            boolean ran = r != null;
+            if (r == null) r = new long[]{-1, 0};
+            Path err = dir.resolve("error" + i + ".txt");
+            String log = Files.exists(err) ? Files.readString(err, StandardCharsets.UTF_8) : "";
+            SandboxRunResult.TestRun t = new SandboxRunResult.TestRun(i, (int) r[0], r[1], dir.resolve("output" + i + ".txt"), log);
+            if (ran) {
+                long[] cgroup = cgroupStats(dir.resolve("stats" + i + ".txt"));
+                t.cpuMillis = cgroup != null && cgroup[0] >= 0 ? Long.valueOf(cgroup[0]) : childCpuMillis(dir.resolve("cpu" + i + ".txt"));
+                t.peakMemoryKb = cgroup != null && cgroup[1] > 0 ? Long.valueOf(cgroup[1]) : peakRssKb(dir.resolve("mem" + i + ".txt"));
+            }
+            result.tests.add(t);
+        }
+        return result;
+    }
+
+    private static String resultsFile(int batchNo) {
+        return "results-" + batchNo + ".txt";
+    }
+
+    // Polls the VmHWM (peak RSS, kB) of the process `timeout` started until killed. VmHWM only grows,
+    // so the last sample is the peak minus whatever was allocated in the final interval. Needs
+    // /proc/<pid>/task/<pid>/children; without it mem<i>.txt stays empty and we report nothing.
+    private static final String PEAK_RSS_SAMPLER = """
+            sample_rss() {
+              hwm=0
+              while :; do
+                kids=
+                read -r kids 2>/dev/null < /proc/$1/task/$1/children
+                for c in $kids; do
+                  while read -r k v rest; do
+                    if [ "$k" = "VmHWM:" ] && [ "$v" -gt "$hwm" ]; then hwm=$v; echo $hwm > $2; fi
+                  done 2>/dev/null < /proc/$c/status
+                done
+                sleep 0.02
+              done
+            }
+            """;
+
+    private static final Pattern SHELL_CLOCK = Pattern.compile("(\\d+)m([0-9.]+)s");
+
+    // cpu<i>.txt holds two `times` outputs; line 2 of each is user + sys of the shell's reaped children
+    private static Long childCpuMillis(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.size() < 4) return null;
+        return Math.max(0, shellClockMillis(lines.get(3)) - shellClockMillis(lines.get(1)));
+    }
+
+    private static long shellClockMillis(String line) {
+        Matcher m = SHELL_CLOCK.matcher(line);
+        double millis = 0;
+        while (m.find()) {
+            millis += Long.parseLong(m.group(1)) * 60_000d + Double.parseDouble(m.group(2)) * 1000d;
+        }
+        return Math.round(millis);
+    }
+
+    private static Long peakRssKb(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        String text = Files.readString(file, StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) return null;
+        try {
+            long kb = Long.parseLong(text);
+            return kb > 0 ? kb : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // "<cpu ms> <peak kB>", either may be missing (-1 / 0)
+    private static long[] cgroupStats(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split("\\s+");
+        long[] out = {-1, 0};
+        try {
+            if (parts.length > 0 && !parts[0].isEmpty()) out[0] = Long.parseLong(parts[0]);
+            if (parts.length > 1) out[1] = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return out;
+    }
+}
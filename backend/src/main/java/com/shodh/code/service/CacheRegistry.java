@@ -0,0 +1,49 @@
+package com.shodh.code.service;
+
+import com.shodh.code.dto.CacheStatsDto;
+import com.shodh.code.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Named in-process caches, collected so their hit/miss counters can be reported in one place.
+@Component
+public class CacheRegistry {
+    private final Map<String, BoundedCache<?, ?>> caches = new ConcurrentSkipListMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public CacheRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Also exported as Micrometer's usual cache.gets / cache.size / cache.evictions meters.
+    public <K, V> BoundedCache<K, V> register(String name, BoundedCache<K, V> cache) {
+        caches.put(name, cache);
+        Tags tags = Tags.of("cache", name);
+        FunctionCounter.builder("cache.gets", cache, BoundedCache::hits).tags(tags).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", cache, BoundedCache::misses).tags(tags).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", cache, BoundedCache::evictions).tags(tags).register(meterRegistry);
+        Gauge.builder("cache.size", cache, BoundedCache::size).tags(tags).register(meterRegistry);
+        return cache;
+    }
+
+    public Map<String, BoundedCache<?, ?>> all() {
+        return caches;
+    }
+
+    public List<CacheStatsDto> stats() {
+        return caches.entrySet().stream().map(e -> {
+            BoundedCache<?, ?> c = e.getValue();
+            long hits = c.hits();
+            long misses = c.misses();
+            double hitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+            return new CacheStatsDto(e.getKey(), c.size(), hits, misses, c.evictions(), hitRate);
+        }).toList();
+    }
+}
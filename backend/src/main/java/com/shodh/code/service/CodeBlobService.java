@@ -0,0 +1,64 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.CodeBlob;
+import com.shodh.code.model.Submission;
+import com.shodh.code.repository.CodeBlobRepository;
+import com.shodh.code.util.Hashing;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class CodeBlobService {
+    private final MongoTemplate mongoTemplate;
+    private final CodeBlobRepository codeBlobRepository;
+
+    // Idempotent: the first copy of a given source inserts the blob, identical copies are no-op upserts.
+    public String store(String code) {
+        String text = code == null ? "" : code;
+        String hash = Hashing.sha256(text);
+        Update update = new Update()
+                .setOnInsert("code", text)
+                .setOnInsert("size", text.getBytes(StandardCharsets.UTF_8).length)
+                .setOnInsert("createdAt", Instant.now());
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(hash)), update, CodeBlob.class);
+        return hash;
+    }
+
+    // Older submissions still carry their code inline; newer ones only reference the blob.
+    public String resolveCode(Submission submission) {
+        if (submission.getCode() != null) return submission.getCode();
+        if (submission.getCodeHash() == null) return "";
+        return codeBlobRepository.findById(submission.getCodeHash()).map(CodeBlob::getCode).orElse("");
+    }
+
+    // resolveCode for many submissions with one blob query; submission id -> code
+    public Map<String, String> resolveCodes(Collection<Submission> submissions) {
+        Set<String> hashes = new HashSet<>();
+        for (Submission s : submissions) {
+            if (s.getCode() == null && s.getCodeHash() != null) hashes.add(s.getCodeHash());
+        }
+        Map<String, String> blobs = new HashMap<>();
+        if (!hashes.isEmpty()) {
+            for (CodeBlob b : codeBlobRepository.findAllById(hashes)) blobs.put(b.getId(), b.getCode());
+        }
+        Map<String, String> codes = new HashMap<>();
+        for (Submission s : submissions) {
+            String code = s.getCode() != null ? s.getCode() : blobs.get(s.getCodeHash());
+            codes.put(s.getId(), code == null ? "" : code);
+        }
+        return codes;
+    }
+}
@@ -1,237 +1,482 @@
 package com.shodh.code.service;
 
+import com.shodh.code.model.CachedVerdict;
 import com.shodh.code.model.Problem;
 import com.shodh.code.model.Submission;
-import lombok.RequiredArgsConstructor;
+import com.shodh.code.model.TestResult;
+import com.shodh.code.service.checker.OutputChecker;
+import com.shodh.code.service.checker.OutputCheckers;
+import com.shodh.code.util.Hashing;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-@RequiredArgsConstructor
 public class CodeExecutionService {
-    private static final Duration PROCESS_TIMEOUT = Duration.ofSeconds(20);
     private static final String JAVA_IMAGE = "openjdk:17";
     private static final String PY_IMAGE = "python:3.11";
     private static final int DEFAULT_MAX_SCORE = 100;
+    private static final Duration PROCESS_TIMEOUT = Duration.ofSeconds(20);
+    private static final int TIMEOUT_EXIT_CODE = 124; // coreutils timeout
+    private static final int BATCH_STOP_WAIT_SECONDS = 5;
+    // 125+: the sandbox/timeout couldn't run the command (125-127) or it died from a signal (128+)
+    private static final int SANDBOX_FAILURE_EXIT_CODE = 125;
 
     private final SubmissionService submissionService;
     private final UserService userService;
+    private final ExecutionBackend executionBackend;
+    private final JavaCompilerService javaCompilerService;
+    private final CodeBlobService codeBlobService;
+    private final TestDataService testDataService;
+    private final JudgeMetrics judgeMetrics;
+    private final VerdictCacheService verdictCacheService;
+    private final LeaderboardService leaderboardService;
+    // set when running in stream mode
+    private final StreamingExecutionBackend streamingBackend;
+    private final boolean sessionMode;
+    // one invocation per test, input/output through pipes instead of files (judge.execution-mode=stream)
+    private final boolean streamMode;
+    private final int testParallelism;
+    // node-wide cap on concurrently running sandbox invocations across all submissions
+    private final Semaphore cpuBudget;
+    private final ExecutorService testExecutor;
+
+    public CodeExecutionService(SubmissionService submissionService,
+                                UserService userService,
+                                ExecutionBackend executionBackend,
+                                JavaCompilerService javaCompilerService,
+                                CodeBlobService codeBlobService,
+                                TestDataService testDataService,
+                                JudgeMetrics judgeMetrics,
+                                VerdictCacheService verdictCacheService,
+                                LeaderboardService leaderboardService,
+                                @Value("${judge.execution-mode:session}") String executionMode,
+                                @Value("${judge.test-parallelism:1}") int testParallelism,
+                                @Value("${judge.cpu-budget:0}") int cpuBudget) {
+        this.submissionService = submissionService;
+        this.userService = userService;
+        this.executionBackend = executionBackend;
+        this.javaCompilerService = javaCompilerService;
+        this.codeBlobService = codeBlobService;
+        this.testDataService = testDataService;
+        this.judgeMetrics = judgeMetrics;
+        this.verdictCacheService = verdictCacheService;
+        this.leaderboardService = leaderboardService;
+        boolean stream = "stream".equalsIgnoreCase(executionMode);
+        if (stream && !(executionBackend instanceof StreamingExecutionBackend)) {
+            System.out.println("[judge] " + executionBackend.getClass().getSimpleName() + " can't stream tests, using session mode");
+        }
+        this.streamingBackend = stream && executionBackend instanceof StreamingExecutionBackend s ? s : null;
+        this.streamMode = streamingBackend != null;
+        this.sessionMode = !streamMode && !"isolated".equalsIgnoreCase(executionMode);
+        this.testParallelism = Math.max(1, testParallelism);
+        this.cpuBudget = new Semaphore(cpuBudget > 0 ? cpuBudget : Runtime.getRuntime().availableProcessors(), true);
+        AtomicInteger threadIds = new AtomicInteger();
+        this.testExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "judge-test-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        testExecutor.shutdownNow();
+    }
 
-    public void runAndEvaluate(Submission submission, Problem problem) {
+    // Returns false if judging was interrupted (node shutting down) before a verdict was stored.
+    public boolean runAndEvaluate(Submission submission, Problem problem) {
         String submissionId = submission.getId();
-        submissionService.updateStatus(submissionId, "Running", null, null);
+        submissionService.publishRunning(submissionId);
+        judgeMetrics.started();
 
-        Path tempDir = null;
+        SandboxLease lease = null;
+        TestDataService.TestFiles tests = null;
         try {
-            tempDir = Paths.get("backend/tmp-exec/" + sanitize(submissionId));
-            Files.createDirectories(tempDir);
-
-            // prepare test cases
-            List<String> inputs = problem.getInputTestCases();
-            List<String> expectedOutputs = problem.getOutputTestCases();
-            int testCount = Math.max(1, Math.min(inputs == null ? 0 : inputs.size(),
-                                              expectedOutputs == null ? 0 : expectedOutputs.size()));
+            int testCount = problem.getTestSet() != null ? problem.getTestSet().size()
+                    : Math.min(problem.getInputTestCases() == null ? 0 : problem.getInputTestCases().size(),
+                               problem.getOutputTestCases() == null ? 0 : problem.getOutputTestCases().size());
             if (testCount == 0) {
-                submissionService.updateStatus(submissionId, "Error", "No testcases", 0);
-                return;
+                submissionService.updateStatus(submission, "Error", "No testcases", 0);
+                return true;
             }
 
             // detect language
             String language = (submission.getLanguage() == null) ? "java" : submission.getLanguage().toLowerCase(Locale.ROOT);
 
-            // Write user code
-            if ("python".equals(language)) {
+            // Identical code already judged against the same tests -> reuse that verdict
+            String code = codeBlobService.resolveCode(submission);
+            String codeHash = submission.getCodeHash() != null ? submission.getCodeHash() : Hashing.sha256(code);
+            Optional<CachedVerdict> cached = verdictCacheService.find(problem, language, codeHash);
+            if (cached.isPresent()) {
+                CachedVerdict v = cached.get();
+                System.out.println("[judge] verdict cache hit for " + submissionId);
+                List<TestResult> testResults = v.getTestResults() == null ? null : new ArrayList<>(v.getTestResults());
+                finish(submission, problem, v.getStatus(), v.getResult(), v.getScore() != null ? v.getScore() : 0, testResults);
+                return true;
+            }
+
+            // Java compiles in-process (cached by source hash) unless no system compiler is available or
+            // the in-process compile gave up (compiled stays null and javac runs in the sandbox)
+            JavaCompilerService.CompiledSource compiled = null;
+            if ("java".equals(language) && javaCompilerService.isAvailable()) {
+                long compileStart = System.nanoTime();
+                compiled = javaCompilerService.compile(code);
+                judgeMetrics.recordCompile("in-process", System.nanoTime() - compileStart);
+                if (compiled != null && !compiled.success) {
+                    System.out.println("[judge] compile output:\n" + compiled.diagnostics);
+                    finish(submission, problem, "Error", "Compilation Error", 0);
+                    verdictCacheService.store(problem, language, codeHash, "Error", "Compilation Error", 0, null);
+                    return true;
+                }
+            }
+
+            // lease a warm sandbox for the language image (compile + all tests run in it)
+            lease = executionBackend.lease("python".equals(language) ? PY_IMAGE : JAVA_IMAGE, submissionId);
+            Path tempDir = lease.getWorkDir();
+
+            // Ship user code: compiled classes if we have them, source otherwise
+            if (compiled != null) {
+                compiled.writeTo(tempDir);
+            } else if ("python".equals(language)) {
                 Path sol = tempDir.resolve("solution.py");
-                Files.writeString(sol, submission.getCode() == null ? "" : submission.getCode(), StandardCharsets.UTF_8);
+                Files.writeString(sol, code, StandardCharsets.UTF_8);
             } else { // default java
                 Path sol = tempDir.resolve("Solution.java");
-                Files.writeString(sol, submission.getCode() == null ? "" : submission.getCode(), StandardCharsets.UTF_8);
-            }
-
-            // write all input files
-            for (int i = 0; i < testCount; ++i) {
-                Path in = tempDir.resolve("input" + i + ".txt");
-                String inStr = (inputs != null && i < inputs.size()) ? inputs.get(i) : "";
-                Files.writeString(in, inStr == null ? "" : inStr, StandardCharsets.UTF_8);
-            }
-
-            // Prepare container image and base commands
-            boolean isWindows = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
-            String mountPath = resolveDockerMountPath(tempDir);
-
-            // If Java -> compile once
-            if ("java".equals(language)) {
-                String compileCmd = buildDockerCommand(mountPath, JAVA_IMAGE,
-                        "sh -c \"cd /app && javac Solution.java\"");
-                ExecResult compileRes = spawn(compileCmd, isWindows);
-                System.out.println("[judge] compile exit=" + compileRes.code);
-                if (compileRes.output != null && !compileRes.output.isEmpty()) System.out.println("[judge] compile output:\n" + compileRes.output);
-                if (compileRes.code != 0) {
-                    submissionService.updateStatus(submissionId, "Error", "Compilation Error", 0);
-                    return;
-                }
+                Files.writeString(sol, code, StandardCharsets.UTF_8);
             }
 
-            // run each test
-            int passed = 0;
-            StringBuilder runOutputLog = new StringBuilder();
-            for (int i = 0; i < testCount; ++i) {
-                String runCmd;
-                if ("python".equals(language)) {
-                    // python: run solution.py
-                    runCmd = buildDockerCommand(mountPath, PY_IMAGE,
-                            "sh -c \"cd /app && timeout 5 python3 solution.py < input" + i + ".txt > output" + i + ".txt\"");
-                } else {
-                    // java: run compiled class
-                    runCmd = buildDockerCommand(mountPath, JAVA_IMAGE,
-                            "sh -c \"cd /app && timeout 5 java Solution < input" + i + ".txt > output" + i + ".txt\"");
+            // test files come from the node-local cache; copied (not linked) since the sandbox can write
+            // to /app. Stream mode feeds them to stdin straight from the cache instead.
+            tests = testDataService.open(problem);
+            for (int i = 0; i < testCount && !streamMode; ++i) {
+                Files.copy(tests.input(i), tempDir.resolve("input" + i + ".txt"), StandardCopyOption.REPLACE_EXISTING);
+                if (executionBackend.needsExpectedOutputs()) {
+                    Files.copy(tests.expectedOutput(i), tempDir.resolve("expected" + i + ".txt"), StandardCopyOption.REPLACE_EXISTING);
                 }
+            }
 
-                ExecResult runRes = spawn(runCmd, isWindows);
-                runOutputLog.append("[judge] test#").append(i).append(" exit=").append(runRes.code).append("\n");
-                if (runRes.output != null && !runRes.output.isEmpty()) runOutputLog.append(runRes.output).append("\n");
-
-                // if exit code non-zero, treat as runtime error for that test
-                if (runRes.code != 0) {
-                    // keep trying other tests, but this one fails
-                    continue;
-                }
+            String compileCmd = compiled == null ? compileCommand(language) : null;
+            boolean failFast = Boolean.TRUE.equals(problem.getFailFast());
+            OutputChecker checker = OutputCheckers.forProblem(problem);
+            TestDataService.TestFiles testFiles = tests;
+            SandboxRunResult run = runTests(lease, language, compileCmd, testCount, failFast, testFiles, checker,
+                    t -> passes(t, testFiles.expectedOutput(t.index), checker));
 
-                Path outPath = tempDir.resolve("output" + i + ".txt");
-                String actual = Files.exists(outPath) ? Files.readString(outPath, StandardCharsets.UTF_8) : "";
-                String expected = (expectedOutputs != null && i < expectedOutputs.size()) ? expectedOutputs.get(i) : "";
+            if (!run.compiled()) {
+                System.out.println("[judge] compile exit=" + run.compileExitCode);
+                if (!run.compileOutput.isEmpty()) System.out.println("[judge] compile output:\n" + run.compileOutput);
+                finish(submission, problem, "Error", "Compilation Error", 0);
+                return true;
+            }
 
-                boolean ok = normalize(actual).equals(normalize(expected));
-                if (ok) passed++;
+            int passed = 0;
+            boolean anyNonZero = false;
+            boolean anyTimeout = false;
+            boolean anySandboxFailure = false;
+            List<TestResult> testResults = new ArrayList<>(run.tests.size());
+            for (SandboxRunResult.TestRun t : run.tests) {
+                System.out.println("[judge] test#" + t.index + " exit=" + t.exitCode + " time=" + t.wallMillis + "ms"
+                        + " cpu=" + t.cpuMillis + "ms peak=" + t.peakMemoryKb + "kB");
+                if (!t.log.isEmpty()) System.out.println(t.log);
+                if (t.passed) passed++;
+                if (t.exitCode != 0) anyNonZero = true;
+                boolean timedOut = t.exitCode == -1 || t.exitCode == TIMEOUT_EXIT_CODE;
+                if (timedOut) anyTimeout = true;
+                if (t.exitCode >= SANDBOX_FAILURE_EXIT_CODE) anySandboxFailure = true;
+                String verdict = t.passed ? "Passed" : timedOut ? "Time Limit Exceeded" : t.exitCode != 0 ? "Runtime Error" : "Wrong Answer";
+                testResults.add(new TestResult(t.index, verdict, t.exitCode, t.wallMillis, t.cpuMillis, t.peakMemoryKb));
+                judgeMetrics.recordTestRun(language, t.wallMillis, t.cpuMillis, t.peakMemoryKb);
+            }
+            if (run.tests.size() < testCount) {
+                System.out.println("[judge] fail-fast: skipped " + (testCount - run.tests.size()) + " remaining tests");
             }
 
             // compute score (equal weight)
             int maxScore = (problem.getMaxScore() != null) ? problem.getMaxScore() : DEFAULT_MAX_SCORE;
             int score = (int) Math.round(((double) passed / testCount) * maxScore);
 
+            String status;
+            String result;
             if (passed == testCount) {
-                submissionService.updateStatus(submissionId, "Accepted", "All test cases passed", score);
-                if (submission.getUserId() != null) userService.addScore(submission.getUserId(), score);
+                status = "Accepted";
+                result = "All test cases passed";
             } else if (passed == 0) {
-                // If none passed, check if any run produced non-zero exit => runtime/compilation errors
-                // We already captured compile errors earlier; if runs exited non-zero, classify as Error
-                // To be conservative, if any run had non-zero exit -> Error, else Wrong Answer.
-                boolean anyNonZero = runOutputLog.toString().contains("exit=-1") || runOutputLog.toString().contains("exit=1") || runOutputLog.toString().contains("exit=2");
-                if (anyNonZero) {
-                    submissionService.updateStatus(submissionId, "Error", "Compilation/Runtime Error", 0);
-                } else {
-                    submissionService.updateStatus(submissionId, "Wrong Answer", "No tests passed", 0);
-                }
+                // If none passed and any run exited non-zero, classify as Error, else Wrong Answer.
+                status = anyNonZero ? "Error" : "Wrong Answer";
+                result = anyNonZero ? "Compilation/Runtime Error" : "No tests passed";
             } else {
-                submissionService.updateStatus(submissionId, "Partially Accepted", passed + "/" + testCount + " passed", score);
-                if (submission.getUserId() != null) userService.addScore(submission.getUserId(), score);
+                status = "Partially Accepted";
+                result = passed + "/" + testCount + " passed";
             }
-
+            finish(submission, problem, status, result, score, testResults);
+            // timeouts depend on node load, and a failing or broken sandbox says nothing about the code,
+            // so don't pin those on every future copy of it
+            if (!anyTimeout && !anySandboxFailure && !lease.isBroken()) verdictCacheService.store(problem, language, codeHash, status, result, score, testResults);
+            return true;
         } catch (Exception e) {
-            submissionService.updateStatus(submissionId, "Error", "System Error", 0);
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                System.out.println("[judge] interrupted while judging " + submissionId);
+                return false;
+            }
+            submissionService.updateStatus(submission, "Error", "System Error", 0);
+            judgeMetrics.recordVerdict("System Error", latency(submission));
             e.printStackTrace();
+            return true;
         } finally {
-            if (tempDir != null) {
-                try { deleteRecursively(tempDir); } catch (IOException ignored) {}
-            }
+            judgeMetrics.finished();
+            if (lease != null) executionBackend.release(lease);
+            if (tests != null) tests.close();
         }
     }
 
-    private static String buildDockerCommand(String mountPath, String image, String innerCommand) {
-        // mountPath already normalized
-        return "docker run --rm -v " + mountPath + ":/app " + image + " " + innerCommand;
+    private void finish(Submission submission, Problem problem, String status, String result, int score) {
+        finish(submission, problem, status, result, score, null);
     }
 
-    private static String firstOrEmpty(List<String> list) {
-        return (list != null && !list.isEmpty()) ? list.get(0) : "";
+    private void finish(Submission submission, Problem problem, String status, String result, int score,
+                        List<TestResult> testResults) {
+        // waits for the (possibly batched) write: scores only count if the verdict was actually stored
+        boolean applied = submissionService.updateStatus(submission, status, result, score, testResults).join();
+        judgeMetrics.recordVerdict(status, latency(submission));
+        if (!applied) {
+            System.out.println("[judge] verdict for " + submission.getId() + " was not stored, scores left as they are");
+            return;
+        }
+        if (score > 0 && submission.getUserId() != null) userService.recordBestScore(submission.getUserId(), problem.getId(), score);
+        leaderboardService.recordScore(problem.getContestId(), submission.getUserId(), problem.getId(), score);
     }
 
-    private static String normalize(String s) {
-        return s == null ? "" : s.trim().replace("\r\n", "\n").replace("\r", "\n");
+    private static Duration latency(Submission submission) {
+        return submission.getCreatedAt() == null ? null : Duration.between(submission.getCreatedAt(), Instant.now());
     }
 
-    private static String sanitize(String s) {
-        if (s == null) return "x";
-        return s.replaceAll("[^a-zA-Z0-9-_]", "_");
-    }
+    // Runs the tests as batches: one session script per batch in session mode, one invocation per
+    // test in isolated mode. Up to testParallelism batches of a submission run at once, each holding
+    // a permit of the node-wide CPU budget. With failFast the first failing test stops the rest.
+    private SandboxRunResult runTests(SandboxLease lease, String language, String compile, int testCount,
+                                      boolean failFast, TestDataService.TestFiles testFiles, OutputChecker checker,
+                                      TestCheck check)
+            throws IOException, InterruptedException {
+        SandboxRunResult result = new SandboxRunResult();
+        List<List<Integer>> batches = planBatches(testCount, failFast);
 
-    private static String resolveDockerMountPath(Path path) {
-        String abs = path.toAbsolutePath().toString();
-        // Windows -> convert C:\path -> /c/path for Docker, but Docker Desktop often accepts C:/... as well.
-        if (System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win")) {
-            abs = abs.replace("\\", "/");
-            // If starts with "C:/", convert to "/c/..."
-            if (abs.length() > 1 && abs.charAt(1) == ':') {
-                char drive = Character.toLowerCase(abs.charAt(0));
-                abs = "/" + drive + abs.substring(2);
+        // a single session compiles inside its script; anything split into batches compiles up front
+        if (compile != null && !(sessionMode && batches.size() == 1)) {
+            long compileStart = System.nanoTime();
+            ProcessRunner.ExecResult compileRes = withCpu(() -> executionBackend.exec(lease, compile, PROCESS_TIMEOUT));
+            judgeMetrics.recordCompile("sandbox", System.nanoTime() - compileStart);
+            // a compile the sandbox killed or couldn't start is a system error, not a compilation error
+            if (compileRes.code == -1 || compileRes.code >= SANDBOX_FAILURE_EXIT_CODE) {
+                lease.markBroken();
+                throw new IOException("sandbox compile failed (exit " + compileRes.code + "): " + compileRes.output);
             }
+            result.compileExitCode = compileRes.code;
+            result.compileOutput = compileRes.output == null ? "" : compileRes.output;
+            if (compileRes.code != 0) return result;
         }
-        return abs;
-    }
-
-    private ExecResult spawn(String fullCommand, boolean isWindows) throws IOException, InterruptedException {
-        ProcessBuilder pb = isWindows
-                ? new ProcessBuilder("cmd", "/c", fullCommand)
-                : new ProcessBuilder("sh", "-c", fullCommand);
-        pb.redirectErrorStream(true);
-        Process p = pb.start();
-        String output = readStream(p.getInputStream());
-        boolean finished = p.waitFor(PROCESS_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
-        if (!finished) {
-            p.destroyForcibly();
-            return new ExecResult(-1, output);
+        String scriptCompile = sessionMode && batches.size() == 1 ? compile : null;
+
+        CompletionService<SandboxRunResult> completion = new ExecutorCompletionService<>(testExecutor);
+        List<Future<SandboxRunResult>> futures = new ArrayList<>();
+        // every batch task registers; the lease is released after we return, so none may outlive this
+        Phaser live = new Phaser(1);
+        List<AtomicBoolean> claims = new ArrayList<>();
+        int next = 0;
+        int pending = 0;
+        boolean stop = false;
+        try {
+            for (; next < Math.min(testParallelism, batches.size()); next++, pending++) {
+                List<Integer> batch = batches.get(next);
+                int batchNo = next;
+                futures.add(completion.submit(tracked(live, claims, () -> withCpu(() -> runBatch(lease, language, scriptCompile, batch, batchNo, failFast, testFiles, checker)))));
+            }
+            while (pending > 0) {
+                SandboxRunResult batchRes;
+                try {
+                    batchRes = completion.take().get();
+                } catch (ExecutionException e) {
+                    lease.markBroken();
+                    throw new IOException("test batch failed", e.getCause());
+                }
+                pending--;
+                if (batchRes.compileExitCode >= SANDBOX_FAILURE_EXIT_CODE) {
+                    lease.markBroken();
+                    throw new IOException("sandbox compile failed (exit " + batchRes.compileExitCode + "): " + batchRes.compileOutput);
+                }
+                if (!batchRes.compiled()) {
+                    result.compileExitCode = batchRes.compileExitCode;
+                    result.compileOutput = batchRes.compileOutput;
+                    return result;
+                }
+                if (scriptCompile != null) {
+                    result.compileOutput = batchRes.compileOutput;
+                    if (batchRes.compileMillis >= 0) judgeMetrics.recordCompile("sandbox", batchRes.compileMillis * 1_000_000);
+                }
+                for (SandboxRunResult.TestRun t : batchRes.tests) {
+                    // streamed tests were checked while they ran
+                    if (!streamMode) {
+                        long checkStart = System.nanoTime();
+                        t.passed = check.passes(t);
+                        judgeMetrics.recordChecker(System.nanoTime() - checkStart);
+                    }
+                    result.tests.add(t);
+                    if (failFast && !t.passed) stop = true;
+                }
+                if (!stop && next < batches.size()) {
+                    List<Integer> batch = batches.get(next);
+                    int batchNo = next;
+                    futures.add(completion.submit(tracked(live, claims, () -> withCpu(() -> runBatch(lease, language, scriptCompile, batch, batchNo, failFast, testFiles, checker)))));
+                    next++;
+                    pending++;
+                }
+                if (stop) break;
+            }
+        } finally {
+            // fail-fast or error: drop batches that haven't started and interrupt running ones (which
+            // kills their sandbox command), then wait until they're all out of the lease
+            for (AtomicBoolean claim : claims) {
+                if (claim.compareAndSet(false, true)) live.arriveAndDeregister();
+            }
+            for (Future<SandboxRunResult> f : futures) f.cancel(true);
+            try {
+                live.awaitAdvanceInterruptibly(live.arrive(), BATCH_STOP_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException | InterruptedException e) {
+                // something is still running in it (e.g. a streamed test blocked on its pipe): never reuse it
+                lease.markBroken();
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            }
         }
-        int code = p.exitValue();
-        return new ExecResult(code, output);
+        result.tests.sort(Comparator.comparingInt(t -> t.index));
+        return result;
     }
 
-    private static String readStream(InputStream is) throws IOException {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                sb.append(line).append('\n');
-            }
-            return sb.toString();
+    private SandboxRunResult runBatch(SandboxLease lease, String language, String compile, List<Integer> batch, int batchNo,
+                                      boolean failFast, TestDataService.TestFiles testFiles, OutputChecker checker)
+            throws IOException, InterruptedException {
+        if (!streamMode) return executionBackend.runBatch(lease, language, compile, batch, batchNo, failFast);
+        SandboxRunResult result = new SandboxRunResult();
+        for (int i : batch) result.tests.add(runStreamed(lease, language, i, testFiles, checker));
+        return result;
+    }
+
+    // The cached input file is the program's stdin and its stdout is checked against the expected
+    // output as it's produced, so a test leaves nothing in the workspace to write, read back or delete.
+    private SandboxRunResult.TestRun runStreamed(SandboxLease lease, String language, int test,
+                                                 TestDataService.TestFiles testFiles, OutputChecker checker)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ProcessRunner.Piped run = streamingBackend.startTest(lease, language, test, testFiles.input(test));
+        boolean matches;
+        try (Reader expected = Files.newBufferedReader(testFiles.expectedOutput(test), StandardCharsets.UTF_8);
+             InputStream stdout = run.stdout();
+             Reader actual = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8))) {
+            matches = checker.matches(expected, actual);
+            // a checker may stop at the first mismatch; keep draining so the program doesn't block on
+            // a full pipe until its deadline
+            stdout.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            // killing a run at its deadline closes the pipe under the reader
+            if (!run.killed()) throw e;
+            matches = false;
         }
+        ProcessRunner.ExecResult res = run.await();
+        SandboxRunResult.TestRun t = BatchScript.streamedResult(lease.getWorkDir(), test, res, (System.nanoTime() - start) / 1_000_000);
+        t.passed = matches && t.exitCode == 0;
+        return t;
     }
 
-    private static void deleteRecursively(Path root) throws IOException {
-        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.deleteIfExists(file);
-                return FileVisitResult.CONTINUE;
-            }
-    
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                Files.deleteIfExists(dir);
-                return FileVisitResult.CONTINUE;
+    // Session mode: testParallelism strided slices (0,P,2P..), isolated and stream mode: one test
+    // per batch (i.e. one sandbox invocation per test).
+    // Fail-fast problems get one test per batch even in session mode: a session script only sees exit
+    // codes, so a wrong answer would otherwise not stop the rest of its slice.
+    private List<List<Integer>> planBatches(int testCount, boolean failFast) {
+        List<List<Integer>> batches = new ArrayList<>();
+        if (sessionMode && !failFast) {
+            int slices = Math.max(1, Math.min(testParallelism, testCount));
+            for (int b = 0; b < slices; b++) batches.add(new ArrayList<>());
+            for (int i = 0; i < testCount; i++) batches.get(i % slices).add(i);
+        } else {
+            for (int i = 0; i < testCount; i++) batches.add(List.of(i));
+        }
+        return batches;
+    }
+
+    private static boolean passes(SandboxRunResult.TestRun t, Path expectedFile, OutputChecker checker) throws IOException {
+        // a non-zero exit is a runtime error for that test regardless of output
+        if (t.exitCode != 0) return false;
+        // both sides streamed from disk: large outputs are compared without loading them into memory
+        try (Reader expected = Files.newBufferedReader(expectedFile, StandardCharsets.UTF_8);
+             Reader actual = Files.exists(t.outputFile) ? Files.newBufferedReader(t.outputFile, StandardCharsets.UTF_8) : Reader.nullReader()) {
+            return checker.matches(expected, actual);
+        }
+    }
+
+    // Runs call unless the task was dropped before it started; live tracks the ones that did.
+    private static <T> Callable<T> tracked(Phaser live, List<AtomicBoolean> claims, SandboxCall<T> call) {
+        AtomicBoolean claim = new AtomicBoolean();
+        claims.add(claim);
+        live.register();
+        return () -> {
+            if (!claim.compareAndSet(false, true)) throw new CancellationException();
+            try {
+                return call.run();
+            } finally {
+                live.arriveAndDeregister();
             }
-        });
+        };
+    }
+
+    private <T> T withCpu(SandboxCall<T> call) throws IOException, InterruptedException {
+        cpuBudget.acquire();
+        try {
+            return call.run();
+        } finally {
+            cpuBudget.release();
+        }
+    }
+
+    private interface SandboxCall<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    private interface TestCheck {
+        boolean passes(SandboxRunResult.TestRun test) throws IOException;
     }
-    
 
-    private static class ExecResult {
-        final int code;
-        final String output;
-        ExecResult(int code, String output) { this.code = code; this.output = output; }
+    private static String compileCommand(String language) {
+        return "python".equals(language) ? null : "javac Solution.java";
     }
 }
@@ -1,41 +1,53 @@
 package com.shodh.code.service;
 
+import com.shodh.code.dto.ProblemDto;
 import com.shodh.code.model.Contest;
 import com.shodh.code.model.LeaderboardEntry;
-import com.shodh.code.model.Problem;
-import com.shodh.code.model.Submission;
-import com.shodh.code.model.User;
 import com.shodh.code.repository.ContestRepository;
-import com.shodh.code.repository.ProblemRepository;
 import com.shodh.code.repository.SubmissionRepository;
-import com.shodh.code.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.shodh.code.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class ContestService {
     private final ContestRepository contestRepository;
-    private final ProblemRepository problemRepository;
+    private final ProblemService problemService;
     private final SubmissionRepository submissionRepository;
-    private final UserRepository userRepository;
+    private final LeaderboardService leaderboardService;
+    private final boolean inMemoryLeaderboard;
+    // contest pages hit this on every load; writes below invalidate, the TTL covers out-of-band edits
+    private final BoundedCache<String, Contest> byId;
+
+    public ContestService(ContestRepository contestRepository,
+                          ProblemService problemService,
+                          SubmissionRepository submissionRepository,
+                          LeaderboardService leaderboardService,
+                          CacheRegistry cacheRegistry,
+                          @Value("${leaderboard.in-memory:true}") boolean inMemoryLeaderboard,
+                          @Value("${cache.contests.max-size:200}") int maxSize,
+                          @Value("${cache.ttl-seconds:300}") long ttlSeconds) {
+        this.contestRepository = contestRepository;
+        this.problemService = problemService;
+        this.submissionRepository = submissionRepository;
+        this.leaderboardService = leaderboardService;
+        this.inMemoryLeaderboard = inMemoryLeaderboard;
+        this.byId = cacheRegistry.register("contests", new BoundedCache<>(maxSize, Duration.ofSeconds(ttlSeconds)));
+    }
 
     public Contest create(Contest contest) {
-        return contestRepository.save(contest);
+        Contest saved = contestRepository.save(contest);
+        byId.invalidate(saved.getId());
+        return saved;
     }
 
     public Optional<Contest> getById(String id) {
-        return contestRepository.findById(id);
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(byId.getOrLoad(id, k -> contestRepository.findById(k).orElse(null)));
     }
 
     public List<Contest> getAll() {
@@ -47,59 +59,45 @@ public class ContestService {
             existing.setName(update.getName());
             existing.setStartTime(update.getStartTime());
             existing.setEndTime(update.getEndTime());
-            return contestRepository.save(existing);
+            if (update.getJudgeWeight() != null) existing.setJudgeWeight(update.getJudgeWeight());
+            Contest saved = contestRepository.save(existing);
+            byId.invalidate(id);
+            return saved;
         });
     }
 
     public void delete(String id) {
         contestRepository.deleteById(id);
+        byId.invalidate(id);
+        leaderboardService.forget(id);
     }
 
-    public List<Problem> getProblems(String contestId) {
-        return problemRepository.findByContestId(contestId);
+    public List<ProblemDto> getProblems(String contestId) {
+        return problemService.getSummariesByContestId(contestId);
     }
 
     public List<LeaderboardEntry> getLeaderboard(String contestId) {
-        List<Problem> problems = problemRepository.findByContestId(contestId);
-        if (problems.isEmpty()) {
-            return List.of();
-        }
-        List<String> problemIds = problems.stream().map(Problem::getId).toList();
-
-        List<Submission> submissions = submissionRepository.findByProblemIdIn(problemIds);
-        if (submissions.isEmpty()) {
-            return List.of();
-        }
+        return getLeaderboardPage(contestId, 0, Integer.MAX_VALUE);
+    }
 
-        // For each user, sum the best score per problem.
-        Map<String, Map<String, Integer>> userProblemBest = new HashMap<>();
-        for (Submission s : submissions) {
-            String userId = s.getUserId();
-            String problemId = s.getProblemId();
-            Integer score = s.getScore() != null ? s.getScore() : 0;
-            userProblemBest
-                .computeIfAbsent(userId, k -> new HashMap<>())
-                .merge(problemId, score, Math::max);
+    public List<LeaderboardEntry> getLeaderboardPage(String contestId, int offset, int limit) {
+        if (inMemoryLeaderboard) {
+            return leaderboardService.top(contestId, offset, limit);
         }
-
-        Map<String, Integer> userTotals = new HashMap<>();
-        for (Map.Entry<String, Map<String, Integer>> e : userProblemBest.entrySet()) {
-            int total = e.getValue().values().stream().mapToInt(Integer::intValue).sum();
-            userTotals.put(e.getKey(), total);
+        // straight from Mongo: the aggregation pipeline does the grouping, sorting and paging
+        List<String> problemIds = getProblems(contestId).stream().map(ProblemDto::getId).toList();
+        if (problemIds.isEmpty()) {
+            return List.of();
         }
+        return submissionRepository.aggregateLeaderboard(problemIds, offset, limit);
+    }
 
-        Set<String> userIds = new HashSet<>(userTotals.keySet());
-        Map<String, User> usersById = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, u -> u));
-
-        List<LeaderboardEntry> leaderboard = new ArrayList<>();
-        for (Map.Entry<String, Integer> e : userTotals.entrySet()) {
-            User u = usersById.get(e.getKey());
-            String username = u != null ? u.getUsername() : "Unknown";
-            leaderboard.add(new LeaderboardEntry(e.getKey(), username, e.getValue()));
-        }
+    // Cheap change marker for conditional GETs; null when only the (uncached) Mongo path is in use.
+    public String getLeaderboardVersion(String contestId) {
+        return inMemoryLeaderboard ? leaderboardService.versionTag(contestId) : null;
+    }
 
-        leaderboard.sort(Comparator.comparing(LeaderboardEntry::getTotalScore).reversed());
-        return leaderboard;
+    public Optional<LeaderboardService.RankedEntry> getRank(String contestId, String userId) {
+        return leaderboardService.rankOf(contestId, userId);
     }
 }
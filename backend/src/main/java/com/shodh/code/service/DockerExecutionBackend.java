@@ -0,0 +1,82 @@
+package com.shodh.code.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+// Runs submissions in Docker: warm pooled containers via docker exec, or one-shot docker run when
+// the pool has nothing free. Each batch is a BatchScript run inside the container at /app.
+@Service
+@ConditionalOnProperty(name = "judge.backend", havingValue = "docker", matchIfMissing = true)
+public class DockerExecutionBackend implements StreamingExecutionBackend {
+    private final SandboxPool sandboxPool;
+    private final ProcessRunner processRunner;
+
+    public DockerExecutionBackend(SandboxPool sandboxPool, ProcessRunner processRunner) {
+        this.sandboxPool = sandboxPool;
+        this.processRunner = processRunner;
+    }
+
+    @Override
+    public SandboxLease lease(String image, String submissionId) throws IOException, InterruptedException {
+        return sandboxPool.lease(image, submissionId);
+    }
+
+    @Override
+    public void release(SandboxLease lease) {
+        sandboxPool.release(lease);
+    }
+
+    @Override
+    public ProcessRunner.ExecResult exec(SandboxLease lease, String command, Duration timeout) throws IOException, InterruptedException {
+        return spawn(lease, "sh -c \"cd /app && " + command + "\"", timeout);
+    }
+
+    @Override
+    public SandboxRunResult runBatch(SandboxLease lease, String language, String compile, List<Integer> tests,
+                                     int batchNo, boolean failFast) throws IOException, InterruptedException {
+        Path dir = lease.getWorkDir();
+        String script = BatchScript.build("/app", compile, runCommand(language), tests, batchNo, failFast, true);
+        String scriptName = "judge-" + batchNo + ".sh";
+        Files.writeString(dir.resolve(scriptName), script, StandardCharsets.UTF_8);
+        ProcessRunner.ExecResult res = spawn(lease, "sh /app/" + scriptName, BatchScript.budget(compile != null, tests.size()));
+        return BatchScript.parse(dir, compile != null, tests, batchNo, failFast, res);
+    }
+
+    // docker exec per test: on top of the program it costs the docker client round trip, so stream
+    // mode pays most on short tests
+    @Override
+    public ProcessRunner.Piped startTest(SandboxLease lease, String language, int test, Path input) throws IOException {
+        String runName = runName();
+        String inner = "sh -c 'cd /app && " + BatchScript.streamedRun(runCommand(language)) + "'";
+        return processRunner.pipe(lease.command(inner, runName, true), input, BatchScript.budget(false, 1), onTimeout(lease, runName));
+    }
+
+    private static String runCommand(String language) {
+        return "python".equals(language) ? "python3 solution.py" : "java Solution";
+    }
+
+    private ProcessRunner.ExecResult spawn(SandboxLease lease, String innerCommand, Duration timeout) throws IOException, InterruptedException {
+        String runName = runName();
+        return processRunner.spawn(lease.command(innerCommand, runName), timeout, onTimeout(lease, runName));
+    }
+
+    private Runnable onTimeout(SandboxLease lease, String runName) {
+        return () -> {
+            // the container is what's actually running the code; don't hand it to anyone else
+            lease.markBroken();
+            processRunner.runInBackground(lease.killCommand(runName));
+        };
+    }
+
+    private static String runName() {
+        return "shodh-run-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,290 @@
+package com.shodh.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Server-Sent Events fan-out by topic (e.g. "submission:<id>", "contest:<id>").
+// Every topic keeps a short replay log so a reconnecting EventSource (Last-Event-ID) picks up
+// where it left off; if the gap is too old it gets a fresh snapshot instead. Each connection has
+// a bounded send buffer: a client that falls behind (its buffer fills up, or one send blocks for
+// longer than sse.send-timeout-seconds) is disconnected and recovers by reconnecting. Emitters are
+// only ever touched from sender threads, so a blocked send never stalls a publisher.
+@Service
+public class EventStreamService {
+    private final long heartbeatSeconds;
+    private final long timeoutMillis;
+    private final int connectionBuffer;
+    private final int replaySize;
+    private final long coalesceMillis;
+    private final long sendTimeoutNanos;
+
+    // seeded from the clock so ids keep increasing across restarts
+    private final AtomicLong eventIds = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Map<String, Pending> coalesced = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService senders;
+
+    public EventStreamService(@Value("${sse.heartbeat-seconds:15}") long heartbeatSeconds,
+                              @Value("${sse.timeout-minutes:30}") long timeoutMinutes,
+                              @Value("${sse.connection-buffer:32}") int connectionBuffer,
+                              @Value("${sse.replay-size:64}") int replaySize,
+                              @Value("${sse.coalesce-millis:1000}") long coalesceMillis,
+                              @Value("${sse.send-timeout-seconds:10}") long sendTimeoutSeconds,
+                              @Value("${sse.sender-threads:0}") int senderThreads) {
+        this.heartbeatSeconds = heartbeatSeconds;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.connectionBuffer = connectionBuffer;
+        this.replaySize = replaySize;
+        this.coalesceMillis = coalesceMillis;
+        this.sendTimeoutNanos = TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+        // sends block on the client's socket; 0 = two per core, at least 4
+        int threads = senderThreads > 0 ? senderThreads : Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        AtomicInteger ids = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sse-sender-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::flushCoalesced, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::dropStalled, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // snapshot is sent when the client has no Last-Event-ID or missed more than the replay log holds.
+    public SseEmitter subscribe(String topicName, String lastEventId, String snapshotName, Supplier<Object> snapshot) {
+        return subscribe(topicName, lastEventId, snapshotName, snapshot, null);
+    }
+
+    // view (if any) is applied to the data of every published or replayed event before it goes out on
+    // this connection, e.g. to trim a shared push to what this subscriber asked for.
+    public SseEmitter subscribe(String topicName, String lastEventId, String snapshotName, Supplier<Object> snapshot,
+                                UnaryOperator<Object> view) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connection conn = new Connection(emitter, view);
+        emitter.onCompletion(() -> remove(topicName, conn));
+        emitter.onTimeout(() -> remove(topicName, conn));
+        emitter.onError(e -> remove(topicName, conn));
+
+        List<Event> replay = null;
+        while (true) {
+            Topic topic = topics.computeIfAbsent(topicName, k -> new Topic());
+            synchronized (topic) {
+                if (topics.get(topicName) != topic) continue; // raced with the last listener leaving
+                topic.connections.add(conn);
+                Long since = parseId(lastEventId);
+                if (since != null && !topic.log.isEmpty() && topic.log.peekFirst().id <= since + 1) {
+                    replay = new ArrayList<>();
+                    for (Event e : topic.log) {
+                        if (e.id > since) replay.add(e);
+                    }
+                }
+                break;
+            }
+        }
+        if (replay != null) {
+            replay.forEach(conn::enqueue);
+        } else if (snapshot != null) {
+            Object data = snapshot.get();
+            if (data != null) conn.enqueue(new Event(eventIds.incrementAndGet(), snapshotName, data));
+        }
+        return emitter;
+    }
+
+    public void publish(String topicName, String name, Object data) {
+        Topic topic = topics.get(topicName);
+        if (topic == null) return; // nobody is listening
+        Event event = new Event(eventIds.incrementAndGet(), name, data);
+        List<Connection> targets;
+        synchronized (topic) {
+            topic.log.addLast(event);
+            while (topic.log.size() > replaySize) topic.log.removeFirst();
+            targets = new ArrayList<>(topic.connections);
+        }
+        targets.forEach(c -> c.enqueue(event));
+    }
+
+    // For high-churn topics (leaderboards): at most one event per topic per coalesce interval,
+    // built from the latest state at flush time.
+    public void publishCoalesced(String topicName, String name, Supplier<Object> snapshot) {
+        if (!topics.containsKey(topicName)) return;
+        coalesced.put(topicName, new Pending(name, snapshot));
+    }
+
+    private void flushCoalesced() {
+        for (String topicName : new ArrayList<>(coalesced.keySet())) {
+            Pending pending = coalesced.remove(topicName);
+            if (pending == null) continue;
+            try {
+                publish(topicName, pending.name(), pending.snapshot().get());
+            } catch (Exception e) {
+                System.out.println("[sse] publish to " + topicName + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Topic topic : topics.values()) {
+            List<Connection> targets;
+            synchronized (topic) {
+                targets = new ArrayList<>(topic.connections);
+            }
+            targets.forEach(c -> c.enqueue(Event.HEARTBEAT));
+        }
+    }
+
+    // A send blocked on the client's socket holds its sender thread until the container's write
+    // timeout; stop feeding such a connection now (the sender completes it once the write returns).
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Topic> entry : topics.entrySet()) {
+            List<Connection> targets;
+            synchronized (entry.getValue()) {
+                targets = new ArrayList<>(entry.getValue().connections);
+            }
+            for (Connection c : targets) {
+                long started = c.sendStarted;
+                if (started != 0 && now - started > sendTimeoutNanos) {
+                    c.close();
+                    remove(entry.getKey(), c);
+                }
+            }
+        }
+    }
+
+    private void remove(String topicName, Connection conn) {
+        conn.closed.set(true);
+        Topic topic = topics.get(topicName);
+        if (topic == null) return;
+        synchronized (topic) {
+            topic.connections.remove(conn);
+            // no listeners left: drop the topic (and its replay log); a late reconnect gets a snapshot
+            if (topic.connections.isEmpty()) topics.remove(topicName, topic);
+        }
+    }
+
+    private static Long parseId(String id) {
+        if (id == null || id.isBlank()) return null;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Topic topic : topics.values()) {
+            synchronized (topic) {
+                topic.connections.forEach(c -> c.emitter.complete());
+                topic.connections.clear();
+            }
+        }
+        senders.shutdownNow();
+    }
+
+    private static final class Topic {
+        final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+        final Deque<Event> log = new ArrayDeque<>();
+    }
+
+    private record Pending(String name, Supplier<Object> snapshot) {}
+
+    private record Event(long id, String name, Object data) {
+        static final Event HEARTBEAT = new Event(-1, null, null);
+    }
+
+    private final class Connection {
+        final SseEmitter emitter;
+        final UnaryOperator<Object> view;
+        final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(connectionBuffer);
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean completed = new AtomicBoolean();
+        // System.nanoTime() when the send in progress started, 0 between sends
+        volatile long sendStarted;
+
+        Connection(SseEmitter emitter, UnaryOperator<Object> view) {
+            this.emitter = emitter;
+            this.view = view;
+        }
+
+        void enqueue(Event event) {
+            if (closed.get()) return;
+            if (!buffer.offer(event)) {
+                // too slow to keep up: drop it, the client reconnects with Last-Event-ID
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        // Stops sending; the emitter is completed on a sender thread (after a blocked send, if any).
+        void close() {
+            closed.set(true);
+            buffer.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+
+        private void drain() {
+            try {
+                Event e;
+                while (!closed.get() && (e = buffer.poll()) != null) {
+                    sendStarted = System.nanoTime();
+                    if (e == Event.HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        Object data = view == null ? e.data() : view.apply(e.data());
+                        emitter.send(SseEmitter.event().id(Long.toString(e.id())).name(e.name()).data(data));
+                    }
+                    sendStarted = 0;
+                }
+                if (closed.get() && completed.compareAndSet(false, true)) emitter.complete();
+            } catch (IOException | IllegalStateException ex) {
+                closed.set(true);
+                if (completed.compareAndSet(false, true)) emitter.completeWithError(ex);
+            } finally {
+                sendStarted = 0;
+                draining.set(false);
+                // an event (or a close) may have arrived between the last poll and releasing the flag
+                if (closed.get() ? !completed.get() : !buffer.isEmpty()) schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.shodh.code.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+// Where submitted code actually runs. CodeExecutionService decides what to run and judges the
+// results (checking, scoring, verdicts); a backend hands out a workspace and runs the compile step
+// and test batches in it. Selected with judge.backend: "docker" (default) or "stub".
+public interface ExecutionBackend {
+
+    // A workspace for one submission; its work dir is mounted at /app inside the sandbox.
+    SandboxLease lease(String image, String submissionId) throws IOException, InterruptedException;
+
+    void release(SandboxLease lease);
+
+    // Runs one command in the sandbox's /app (the compile step when tests are split into batches).
+    ProcessRunner.ExecResult exec(SandboxLease lease, String command, Duration timeout) throws IOException, InterruptedException;
+
+    // One invocation: optionally compile, then the given tests in sequence, reading input<i>.txt and
+    // leaving output<i>.txt in the work dir. With failFast, stops after the first non-zero exit.
+    SandboxRunResult runBatch(SandboxLease lease, String language, String compile, List<Integer> tests,
+                              int batchNo, boolean failFast) throws IOException, InterruptedException;
+
+    // Simulated backends produce outputs from the expected ones, so they need expected<i>.txt staged too.
+    default boolean needsExpectedOutputs() {
+        return false;
+    }
+}
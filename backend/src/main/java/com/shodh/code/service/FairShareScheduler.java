@@ -0,0 +1,170 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.Contest;
+import com.shodh.code.model.Problem;
+import com.shodh.code.model.Submission;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeSet;
+import java.util.stream.DoubleStream;
+
+// Two-level weighted fair queuing over the claimable submissions a judge node sees. Contests share
+// judge capacity in proportion to their judgeWeight, and users within a contest share their
+// contest's part equally, so a few users flooding the queue mostly delay themselves. Every dispatched
+// submission charges its cost to its user and (divided by the weight) to its contest; the next pick
+// is the least-charged backlogged contest, then its least-charged user, then that user's first
+// attempts before resubmissions, oldest first. Resubmissions cost more, so they also lose ties
+// against other users' first attempts. A flow that comes back after being idle starts at the
+// current minimum rather than with credit it didn't use. Only the judge claimer thread calls this.
+@Component
+public class FairShareScheduler {
+    private static final Comparator<Submission> USER_ORDER = Comparator
+            .comparing((Submission s) -> Boolean.TRUE.equals(s.getResubmission()))
+            .thenComparing(Submission::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Submission::getId);
+
+    private final ProblemService problemService;
+    private final ContestService contestService;
+    private final double resubmitCost;
+
+    // contest id ("" for problems outside a contest) -> its users
+    private final Map<String, ContestFlow> contests = new HashMap<>();
+
+    public FairShareScheduler(ProblemService problemService,
+                              ContestService contestService,
+                              @Value("${judge.fair.resubmit-cost:2}") double resubmitCost) {
+        this.problemService = problemService;
+        this.contestService = contestService;
+        this.resubmitCost = resubmitCost;
+    }
+
+    // Replaces the backlog with a fresh read of the queue; accumulated charges are kept.
+    public void offer(List<Submission> candidates) {
+        for (ContestFlow c : contests.values()) {
+            c.wasBacklogged = c.backlogged();
+            for (UserFlow u : c.users.values()) {
+                u.wasBacklogged = !u.queue.isEmpty();
+                u.queue.clear();
+            }
+        }
+        for (Submission s : candidates) {
+            String contestId = problemService.getById(s.getProblemId()).map(Problem::getContestId).orElse("");
+            ContestFlow c = contests.computeIfAbsent(contestId, this::newContest);
+            String userId = s.getUserId() == null ? "" : s.getUserId();
+            c.users.computeIfAbsent(userId, k -> new UserFlow()).queue.add(s);
+        }
+
+        // newly backlogged flows catch up with the ones that stayed backlogged
+        Double minContest = min(contests.values().stream()
+                .filter(c -> c.wasBacklogged && c.backlogged()).mapToDouble(c -> c.charged));
+        for (ContestFlow c : contests.values()) {
+            if (minContest != null && !c.wasBacklogged && c.backlogged()) c.charged = Math.max(c.charged, minContest);
+            Double minUser = min(c.users.values().stream()
+                    .filter(u -> u.wasBacklogged && !u.queue.isEmpty()).mapToDouble(u -> u.charged));
+            for (Iterator<UserFlow> it = c.users.values().iterator(); it.hasNext(); ) {
+                UserFlow u = it.next();
+                if (u.queue.isEmpty()) {
+                    // idle with nothing owed: forget it
+                    if (minUser == null || u.charged <= minUser) it.remove();
+                } else if (minUser != null && !u.wasBacklogged) {
+                    u.charged = Math.max(u.charged, minUser);
+                }
+            }
+        }
+        contests.values().removeIf(c -> c.users.isEmpty() || (!c.backlogged() && (minContest == null || c.charged <= minContest)));
+    }
+
+    public boolean isEmpty() {
+        return contests.values().stream().noneMatch(ContestFlow::backlogged);
+    }
+
+    // Takes the next submission to claim off the backlog (null if there is none).
+    public Submission poll() {
+        ContestFlow contest = null;
+        for (ContestFlow c : contests.values()) {
+            if (c.backlogged() && (contest == null || before(c.charged, c.oldest(), contest.charged, contest.oldest()))) contest = c;
+        }
+        if (contest == null) return null;
+        UserFlow user = null;
+        for (UserFlow u : contest.users.values()) {
+            if (!u.queue.isEmpty() && (user == null || before(u.charged, oldest(u), user.charged, oldest(user)))) user = u;
+        }
+        return user.queue.pollFirst();
+    }
+
+    // Bills a submission that was actually claimed to its user and contest.
+    public void charge(Submission s) {
+        double cost = Boolean.TRUE.equals(s.getResubmission()) ? resubmitCost : 1;
+        String contestId = problemService.getById(s.getProblemId()).map(Problem::getContestId).orElse("");
+        ContestFlow c = contests.get(contestId);
+        if (c == null) return;
+        c.charged += cost / c.weight;
+        UserFlow u = c.users.get(s.getUserId() == null ? "" : s.getUserId());
+        if (u != null) u.charged += cost;
+    }
+
+    private ContestFlow newContest(String contestId) {
+        int weight = contestService.getById(contestId.isEmpty() ? null : contestId)
+                .map(Contest::getJudgeWeight).filter(w -> w > 0).orElse(1);
+        return new ContestFlow(weight);
+    }
+
+    // less charged first; ties go to whoever has waited longest
+    private static boolean before(double charged, Instant oldest, double otherCharged, Instant otherOldest) {
+        if (charged != otherCharged) return charged < otherCharged;
+        if (oldest == null || otherOldest == null) return oldest == null && otherOldest != null;
+        return oldest.isBefore(otherOldest);
+    }
+
+    private static Instant oldest(UserFlow u) {
+        Instant oldest = null;
+        for (Submission s : u.queue) {
+            if (s.getCreatedAt() != null && (oldest == null || s.getCreatedAt().isBefore(oldest))) oldest = s.getCreatedAt();
+        }
+        return oldest;
+    }
+
+    private static Double min(DoubleStream values) {
+        OptionalDouble min = values.min();
+        return min.isPresent() ? min.getAsDouble() : null;
+    }
+
+    private static final class ContestFlow {
+        final int weight;
+        final Map<String, UserFlow> users = new HashMap<>();
+        double charged;
+        boolean wasBacklogged;
+
+        ContestFlow(int weight) {
+            this.weight = weight;
+        }
+
+        boolean backlogged() {
+            for (UserFlow u : users.values()) if (!u.queue.isEmpty()) return true;
+            return false;
+        }
+
+        Instant oldest() {
+            Instant oldest = null;
+            for (UserFlow u : users.values()) {
+                Instant o = FairShareScheduler.oldest(u);
+                if (o != null && (oldest == null || o.isBefore(oldest))) oldest = o;
+            }
+            return oldest;
+        }
+    }
+
+    private static final class UserFlow {
+        final TreeSet<Submission> queue = new TreeSet<>(USER_ORDER);
+        double charged;
+        boolean wasBacklogged;
+    }
+}
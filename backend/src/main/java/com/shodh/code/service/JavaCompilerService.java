@@ -0,0 +1,202 @@
+package com.shodh.code.service;
+
+import com.shodh.code.util.BoundedCache;
+import com.shodh.code.util.Hashing;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Compiles Java submissions inside the backend JVM (no container round trip) and caches the
+// resulting bytecode by SHA-256 of the source, so resubmissions and rejudges skip javac entirely.
+// javac runs on a small fixed pool with a deadline: a source that is too big, a compile that takes
+// too long or a moment when every compiler thread is busy falls back to javac inside the sandbox,
+// whose limits then apply.
+@Service
+public class JavaCompilerService {
+    private static final String SOURCE_NAME = "Solution.java";
+    private static final List<String> OPTIONS = List.of("--release", "17", "-proc:none", "-encoding", "UTF-8");
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final boolean enabled;
+    private final BoundedCache<String, CompiledSource> cache;
+    private final ThreadPoolExecutor compilers;
+    private final long timeoutMillis;
+    private final int maxSourceChars;
+
+    public JavaCompilerService(CacheRegistry cacheRegistry,
+                               @Value("${judge.compiler.in-process:true}") boolean enabled,
+                               @Value("${judge.compiler.cache-size:500}") int cacheSize,
+                               @Value("${judge.compiler.threads:2}") int threads,
+                               @Value("${judge.compiler.timeout-seconds:10}") long timeoutSeconds,
+                               @Value("${judge.compiler.max-source-kb:64}") int maxSourceKb) {
+        this.enabled = enabled;
+        this.cache = cacheRegistry.register("compiledClasses", new BoundedCache<>(cacheSize));
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.maxSourceChars = maxSourceKb * 1024;
+        int size = Math.max(1, threads);
+        AtomicInteger threadIds = new AtomicInteger();
+        // no queue: a compile that finds every thread busy is rejected rather than waiting
+        this.compilers = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "judge-javac-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        if (enabled && compiler == null) {
+            System.out.println("[judge] no system Java compiler (running on a JRE?), compiling inside the sandbox");
+        }
+    }
+
+    public boolean isAvailable() {
+        return enabled && compiler != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compilers.shutdownNow();
+    }
+
+    // null (and nothing cached) when the source wasn't compiled here: the caller compiles in the sandbox
+    public CompiledSource compile(String source) {
+        String key = Hashing.sha256(source);
+        return cache.getOrLoad(key, k -> compileWithDeadline(source));
+    }
+
+    private CompiledSource compileWithDeadline(String source) {
+        if (source != null && source.length() > maxSourceChars) return null;
+        Future<CompiledSource> task;
+        try {
+            task = compilers.submit(() -> doCompile(source));
+        } catch (RejectedExecutionException e) {
+            System.out.println("[judge] in-process compilers busy, compiling inside the sandbox");
+            return null;
+        }
+        try {
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // javac checks for the interrupt between phases (see doCompile)
+            task.cancel(true);
+            System.out.println("[judge] in-process compile timed out, compiling inside the sandbox");
+            return null;
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.out.println("[judge] in-process compile failed (" + e.getCause() + "), compiling inside the sandbox");
+            return null;
+        }
+    }
+
+    private CompiledSource doCompile(String source) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager std = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+        // nothing but the platform classes: by default javac would see the backend's own classpath
+        // (an empty -classpath option means the working directory to javac)
+        std.setLocation(StandardLocation.CLASS_PATH, List.of());
+        Map<String, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        try (InMemoryFileManager fm = new InMemoryFileManager(std, outputs)) {
+            JavaFileObject src = new SimpleJavaFileObject(URI.create("string:///" + SOURCE_NAME), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source == null ? "" : source;
+                }
+            };
+            JavacTask task = (JavacTask) compiler.getTask(null, fm, diagnostics, OPTIONS, null, List.of(src));
+            task.addTaskListener(new TaskListener() {
+                @Override
+                public void started(TaskEvent e) {
+                    if (Thread.currentThread().isInterrupted()) throw new CancellationException("compile cancelled");
+                }
+            });
+            boolean ok = task.call();
+            StringBuilder messages = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                messages.append(SOURCE_NAME).append(':').append(d.getLineNumber()).append(": ")
+                        .append(d.getKind().toString().toLowerCase(Locale.ROOT)).append(": ")
+                        .append(d.getMessage(Locale.ROOT)).append('\n');
+            }
+            Map<String, byte[]> classes = new ConcurrentHashMap<>();
+            if (ok) outputs.forEach((name, bytes) -> classes.put(name, bytes.toByteArray()));
+            return new CompiledSource(ok, messages.toString(), Map.copyOf(classes));
+        }
+    }
+
+    public static class CompiledSource {
+        final boolean success;
+        final String diagnostics;
+        // binary class name (e.g. Solution$Node) -> bytecode
+        final Map<String, byte[]> classes;
+
+        CompiledSource(boolean success, String diagnostics, Map<String, byte[]> classes) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.classes = classes;
+        }
+
+        // Writes the .class files into a sandbox workspace, laid out by package.
+        public void writeTo(Path dir) throws IOException {
+            for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+                Path file = dir.resolve(e.getKey().replace('.', '/') + ".class");
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                Files.write(file, e.getValue());
+            }
+        }
+    }
+
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, ByteArrayOutputStream> outputs;
+
+        InMemoryFileManager(StandardJavaFileManager delegate, Map<String, ByteArrayOutputStream> outputs) {
+            super(delegate);
+            this.outputs = outputs;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            URI uri = URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    outputs.put(className, bytes);
+                    return bytes;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.shodh.code.service;
+
+import com.shodh.code.dto.JudgeStatsDto;
+import com.shodh.code.model.Problem;
+import com.shodh.code.model.Submission;
+import com.shodh.code.repository.SubmissionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The judge queue lives in the submissions collection: a submission is queued while Pending, and
+// judge nodes claim the oldest one atomically (findAndModify -> Running, with a lease). Leases are
+// extended by a heartbeat while judging; a node that dies stops heartbeating and its submissions
+// become claimable again once the lease expires. API nodes only insert Pending submissions, so
+// judge capacity scales independently (judge.worker.enabled / the judge-worker profile). Which
+// claimable submission a node takes next is decided by FairShareScheduler (judge.fair.enabled),
+// over a window of the oldest ones, rather than strictly oldest first.
+@Service
+public class JudgeDispatcher {
+    private final CodeExecutionService codeExecutionService;
+    private final ProblemService problemService;
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionService submissionService;
+    private final FairShareScheduler fairShareScheduler;
+    private final JudgeMetrics judgeMetrics;
+    private final boolean workerEnabled;
+    private final int workers;
+    private final int queueCapacity;
+    private final int retryAfterSeconds;
+    private final long shutdownTimeoutSeconds;
+    private final Duration lease;
+    private final long pollMillis;
+    private final int maxAttempts;
+    private final boolean fairShare;
+    private final int fairWindow;
+    private final String nodeId;
+
+    private ThreadPoolExecutor executor;
+    private Thread claimer;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "judge-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+    // one permit per idle worker; the claimer only claims what it can start right away
+    private final Semaphore idleWorkers;
+    // released by submit() so a local worker doesn't wait out the poll interval
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+    // claimer thread only: when the fair-share backlog was last read from Mongo
+    private long backlogReadAt;
+    private volatile boolean backlogStale = true;
+
+    // submissions this node gave a verdict; handed-back (requeued) ones don't count
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong redelivered = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong lastWaitMillis = new AtomicLong();
+
+    public JudgeDispatcher(CodeExecutionService codeExecutionService,
+                           ProblemService problemService,
+                           SubmissionRepository submissionRepository,
+                           SubmissionService submissionService,
+                           FairShareScheduler fairShareScheduler,
+                           JudgeMetrics judgeMetrics,
+                           @Value("${judge.worker.enabled:true}") boolean workerEnabled,
+                           @Value("${judge.workers:4}") int workers,
+                           @Value("${judge.queue-capacity:200}") int queueCapacity,
+                           @Value("${judge.retry-after-seconds:5}") int retryAfterSeconds,
+                           @Value("${judge.shutdown-timeout-seconds:60}") long shutdownTimeoutSeconds,
+                           @Value("${judge.queue.lease-seconds:60}") long leaseSeconds,
+                           @Value("${judge.queue.poll-ms:500}") long pollMillis,
+                           @Value("${judge.queue.max-attempts:3}") int maxAttempts,
+                           @Value("${judge.fair.enabled:true}") boolean fairShare,
+                           @Value("${judge.fair.window:200}") int fairWindow,
+                           @Value("${judge.node-id:}") String nodeId) {
+        this.codeExecutionService = codeExecutionService;
+        this.problemService = problemService;
+        this.submissionRepository = submissionRepository;
+        this.submissionService = submissionService;
+        this.fairShareScheduler = fairShareScheduler;
+        this.judgeMetrics = judgeMetrics;
+        this.workerEnabled = workerEnabled;
+        this.workers = workerEnabled ? workers : 0;
+        this.queueCapacity = queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.pollMillis = pollMillis;
+        this.maxAttempts = maxAttempts;
+        this.fairShare = fairShare;
+        // a window smaller than the queue hides everything but its oldest part from the scheduler,
+        // which then degrades to FIFO for the submissions a flooding user queued first
+        if (fairShare && fairWindow < queueCapacity) {
+            System.out.println("[judge] judge.fair.window=" + fairWindow + " is below judge.queue-capacity, using " + queueCapacity);
+        }
+        this.fairWindow = Math.max(fairWindow, queueCapacity);
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.idleWorkers = new Semaphore(this.workers);
+        judgeMetrics.gauge("judge.queue.depth", "Pending submissions in the shared judge queue", submissionRepository, r -> r.countQueued(0));
+        judgeMetrics.gauge("judge.workers.active", "Judge workers currently busy", inFlight, Set::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!workerEnabled) {
+            System.out.println("[judge] worker disabled on this node; submissions are judged by other nodes");
+            return;
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        // never more tasks than workers: the claimer holds an idle permit for each one
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "judge-worker-" + threadIds.incrementAndGet());
+                    t.setDaemon(false);
+                    return t;
+                });
+        claimer = new Thread(this::claimLoop, "judge-claimer");
+        claimer.setDaemon(true);
+        claimer.start();
+        long every = Math.max(1, lease.toMillis() / 3);
+        heartbeat.scheduleWithFixedDelay(this::extendLeases, every, every, TimeUnit.MILLISECONDS);
+        System.out.println("[judge] node " + nodeId + " judging with " + workers + " workers");
+    }
+
+    // Admission control for the whole cluster: false when the shared queue already holds
+    // queue-capacity Pending submissions, so the API can push back before storing anything.
+    public boolean admit() {
+        if (stopping || submissionRepository.countQueued(queueCapacity) >= queueCapacity) {
+            rejected.incrementAndGet();
+            judgeMetrics.recordRejected("queue-full");
+            return false;
+        }
+        return true;
+    }
+
+    // The submission is already in the queue (stored as Pending); this only nudges local workers.
+    public void submit(Submission submission) {
+        if (!workerEnabled) return;
+        backlogStale = true;
+        wakeUp.release();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public JudgeStatsDto getStats() {
+        long done = completed.get();
+        long waits = claimed.get();
+        return new JudgeStatsDto(
+                nodeId,
+                workers,
+                inFlight.size(),
+                (int) submissionRepository.countQueued(0),
+                queueCapacity,
+                done,
+                rejected.get(),
+                redelivered.get(),
+                waits == 0 ? 0 : totalWaitMillis.get() / waits,
+                lastWaitMillis.get(),
+                maxWaitMillis.get()
+        );
+    }
+
+    private void claimLoop() {
+        while (!stopping) {
+            try {
+                idleWorkers.acquire();
+                Submission claimed = null;
+                try {
+                    claimed = stopping ? null : claim();
+                } finally {
+                    if (claimed == null) idleWorkers.release();
+                }
+                if (claimed == null) {
+                    // nothing queued: wait for a local submit or the next poll
+                    wakeUp.tryAcquire(pollMillis, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                    continue;
+                }
+                Submission submission = claimed;
+                inFlight.add(submission.getId());
+                executor.execute(() -> judge(submission));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                // Mongo unavailable: back off and retry
+                System.out.println("[judge] claim failed: " + e.getMessage());
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Submission claim() {
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plus(lease);
+        if (!fairShare) return submissionRepository.claimNext(nodeId, now, leaseUntil);
+
+        // pick from a recent view of the queue; a pick another node claimed first is skipped
+        if (backlogStale || fairShareScheduler.isEmpty()
+                || System.nanoTime() - backlogReadAt > TimeUnit.MILLISECONDS.toNanos(pollMillis)) {
+            backlogStale = false;
+            fairShareScheduler.offer(submissionRepository.findClaimable(now, fairWindow));
+            backlogReadAt = System.nanoTime();
+        }
+        for (Submission next; (next = fairShareScheduler.poll()) != null; ) {
+            Submission claimed = submissionRepository.claim(next.getId(), nodeId, now, leaseUntil);
+            if (claimed != null) {
+                fairShareScheduler.charge(next);
+                return claimed;
+            }
+        }
+        return null;
+    }
+
+    private void judge(Submission submission) {
+        String id = submission.getId();
+        boolean finished = false;
+        try {
+            int attempt = submission.getAttempts() == null ? 1 : submission.getAttempts();
+            if (attempt > 1) {
+                redelivered.incrementAndGet();
+                System.out.println("[judge] re-delivered " + id + " (attempt " + attempt + ")");
+            }
+            if (attempt > maxAttempts) {
+                // keeps taking judges down with it; don't hand it out again
+                submissionService.updateStatus(submission, "Error", "System Error", 0);
+                judgeMetrics.recordVerdict("System Error", null);
+                finished = true;
+                return;
+            }
+            long waited = submission.getCreatedAt() == null ? 0 : Math.max(0, Duration.between(submission.getCreatedAt(), Instant.now()).toMillis());
+            lastWaitMillis.set(waited);
+            totalWaitMillis.addAndGet(waited);
+            claimed.incrementAndGet();
+            maxWaitMillis.accumulateAndGet(waited, Math::max);
+            judgeMetrics.recordQueueWait(waited);
+
+            Optional<Problem> problem = problemService.getById(submission.getProblemId());
+            if (problem.isEmpty()) {
+                // nothing to judge it against; without a verdict it would sit in Running
+                System.out.println("[judge] problem " + submission.getProblemId() + " of " + id + " not found");
+                submissionService.updateStatus(submission, "Error", "Problem not found", 0);
+                judgeMetrics.recordVerdict("Error", null);
+                finished = true;
+                return;
+            }
+            finished = codeExecutionService.runAndEvaluate(submission, problem.get());
+        } catch (Exception e) {
+            System.out.println("[judge] submission " + id + " failed: " + e.getMessage());
+            finished = true;
+        } finally {
+            if (finished) completed.incrementAndGet();
+            else requeue(id);
+            inFlight.remove(id);
+            idleWorkers.release();
+        }
+    }
+
+    // Interrupted mid-judge (shutdown): give it back rather than waiting out the lease.
+    private void requeue(String id) {
+        boolean interrupted = Thread.interrupted(); // the driver refuses to run on an interrupted thread
+        try {
+            if (submissionRepository.requeue(id, nodeId)) System.out.println("[judge] returned " + id + " to the queue");
+        } catch (Exception e) {
+            System.out.println("[judge] requeue of " + id + " failed, it will be re-delivered after its lease: " + e.getMessage());
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private void extendLeases() {
+        try {
+            submissionRepository.extendLeases(new ArrayList<>(inFlight), nodeId, Instant.now().plus(lease));
+        } catch (Exception e) {
+            System.out.println("[judge] lease heartbeat failed: " + e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 4);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Stop claiming but let running submissions finish; whatever is cut off goes back to the queue.
+        stopping = true;
+        if (executor == null) return;
+        claimer.interrupt();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                System.out.println("[judge] shutdown timed out, returning " + inFlight.size() + " submissions to the queue");
+                executor.shutdownNow();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            heartbeat.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.shodh.code.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+// Micrometer meters for the judge pipeline, scraped from /actuator/prometheus. Timers publish
+// histogram buckets so percentiles can be computed server-side across instances.
+@Component
+public class JudgeMetrics {
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Timer queueWait;
+    private final Timer checker;
+    private final DistributionSummary testCpu;
+    private final DistributionSummary testMemory;
+
+    public JudgeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.queueWait = timer("judge.queue.wait", "Time a submission waits for a judge worker");
+        this.checker = timer("judge.checker", "Time to compare one test's output with the expected output");
+        this.testCpu = DistributionSummary.builder("judge.test.cpu")
+                .description("CPU time of one test run")
+                .baseUnit("milliseconds")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.testMemory = DistributionSummary.builder("judge.test.memory")
+                .description("Peak resident memory of one test run")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("judge.inflight", inFlight, AtomicInteger::get)
+                .description("Submissions currently being judged")
+                .register(registry);
+    }
+
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    public void finished() {
+        inFlight.decrementAndGet();
+    }
+
+    // reason: "rate-limit" (per-user token bucket) or "queue-full"
+    public void recordRejected(String reason) {
+        Counter.builder("judge.submissions.rejected")
+                .description("Submissions turned away with 429")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordQueueWait(long millis) {
+        queueWait.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    // where: "in-process" (javax.tools) or "sandbox" (javac inside the container)
+    public void recordCompile(String where, long nanos) {
+        Timer.builder("judge.compile")
+                .description("Compilation time")
+                .tag("where", where)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTestRun(String language, long wallMillis, Long cpuMillis, Long peakMemoryKb) {
+        Timer.builder("judge.test.run")
+                .description("Wall time of one test run inside the sandbox")
+                .tag("language", language)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(wallMillis, TimeUnit.MILLISECONDS);
+        if (cpuMillis != null) testCpu.record(cpuMillis);
+        if (peakMemoryKb != null) testMemory.record(peakMemoryKb * 1024d);
+    }
+
+    public void recordChecker(long nanos) {
+        checker.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // kind: "spawn" (docker run of a pool container), "lease" (waiting for / creating a workspace)
+    public void recordSandbox(String kind, String outcome, long nanos) {
+        Timer.builder("judge.sandbox")
+                .description("Sandbox container spawn and lease time")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // End-to-end: from submission creation to the final verdict being stored.
+    public void recordVerdict(String status, Duration latency) {
+        Counter.builder("judge.verdicts")
+                .description("Final verdicts by status")
+                .tag("status", status)
+                .register(registry)
+                .increment();
+        if (latency != null && !latency.isNegative()) {
+            Timer.builder("judge.verdict.latency")
+                    .description("Time from submission to final verdict")
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(latency);
+        }
+    }
+
+    public <T> void gauge(String name, String description, T obj, ToDoubleFunction<T> value) {
+        Gauge.builder(name, obj, value).description(description).register(registry);
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name).description(description).publishPercentileHistogram().register(registry);
+    }
+}
@@ -0,0 +1,220 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.Contest;
+import com.shodh.code.model.LeaderboardEntry;
+import com.shodh.code.model.Problem;
+import com.shodh.code.model.User;
+import com.shodh.code.model.UserProblemScores;
+import com.shodh.code.repository.ContestRepository;
+import com.shodh.code.repository.ProblemRepository;
+import com.shodh.code.repository.SubmissionRepository;
+import com.shodh.code.repository.UserRepository;
+import com.shodh.code.util.RankTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Per-contest leaderboards kept in memory and updated as verdicts are finalized, so polling the
+// leaderboard no longer rescans every submission. Boards are rebuilt from Mongo at startup and
+// lazily for contests first touched later; only contests that exist and have problems get one. Judge-only nodes (api.enabled=false) keep no boards:
+// API nodes apply verdicts judged elsewhere through SubmissionChangeFeed.
+@Service
+public class LeaderboardService {
+    private final ContestRepository contestRepository;
+    private final ProblemRepository problemRepository;
+    private final SubmissionRepository submissionRepository;
+    private final UserRepository userRepository;
+    private final EventStreamService eventStreamService;
+    private final int pushSize;
+    private final boolean enabled;
+
+    private final Map<String, ContestBoard> boards = new ConcurrentHashMap<>();
+    private final long epoch = System.currentTimeMillis();
+
+    public LeaderboardService(ContestRepository contestRepository,
+                              ProblemRepository problemRepository,
+                              SubmissionRepository submissionRepository,
+                              UserRepository userRepository,
+                              EventStreamService eventStreamService,
+                              @Value("${sse.leaderboard-push-size:100}") int pushSize,
+                              @Value("${api.enabled:true}") boolean enabled) {
+        this.contestRepository = contestRepository;
+        this.problemRepository = problemRepository;
+        this.submissionRepository = submissionRepository;
+        this.userRepository = userRepository;
+        this.eventStreamService = eventStreamService;
+        this.pushSize = pushSize;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        if (!enabled) return;
+        try {
+            for (Contest c : contestRepository.findAll()) {
+                // never replaces a board a verdict already loaded lazily (see board())
+                board(c.getId());
+            }
+            System.out.println("[leaderboard] rebuilt " + boards.size() + " contest boards");
+        } catch (Exception e) {
+            System.out.println("[leaderboard] rebuild failed, boards will load lazily: " + e.getMessage());
+        }
+    }
+
+    // Applies a finalized verdict. Only improvements on a (user, problem) best score move the board.
+    public boolean recordScore(String contestId, String userId, String problemId, int score) {
+        if (!enabled || contestId == null || userId == null || problemId == null) return false;
+        ContestBoard board = board(contestId);
+        if (!board.hasUser(userId)) {
+            String username = userRepository.findById(userId).map(User::getUsername).orElse("Unknown");
+            board.addUser(userId, username);
+        }
+        boolean changed = board.record(userId, problemId, score);
+        if (changed) {
+            // coalesced: a burst of verdicts turns into one push per interval
+            eventStreamService.publishCoalesced(topic(contestId), "leaderboard", () -> top(contestId, 0, pushSize));
+        }
+        return changed;
+    }
+
+    // Drops a deleted contest's board.
+    public void forget(String contestId) {
+        if (contestId != null) boards.remove(contestId);
+    }
+
+    // Pushes carry the top pushSize entries to every subscriber of a contest; trimmed per connection.
+    public int getPushSize() {
+        return pushSize;
+    }
+
+    public static UnaryOperator<Object> firstEntries(int limit) {
+        return data -> data instanceof List<?> entries && entries.size() > limit ? entries.subList(0, limit) : data;
+    }
+
+    public static String topic(String contestId) {
+        return "contest:" + contestId;
+    }
+
+    public List<LeaderboardEntry> top(String contestId, int offset, int limit) {
+        return board(contestId).page(offset, limit);
+    }
+
+    // 1-based competition rank (ties share a rank) together with the user's entry.
+    public Optional<RankedEntry> rankOf(String contestId, String userId) {
+        return board(contestId).rankOf(userId);
+    }
+
+    public long version(String contestId) {
+        return board(contestId).version();
+    }
+
+    // Changes whenever the contest's board does, including across restarts (versions restart at 0).
+    public String versionTag(String contestId) {
+        return epoch + ":" + version(contestId);
+    }
+
+    // Loads outside the map (an aggregation shouldn't hold a ConcurrentHashMap bin lock) and keeps the
+    // first board stored. Callers always use the stored one, so recordScore updates land in the board
+    // that stays; a losing load is dropped, and its verdicts were in Mongo before recordScore ran.
+    // Unknown contests and contests without problems get an empty board that isn't kept.
+    private ContestBoard board(String contestId) {
+        ContestBoard board = boards.get(contestId);
+        if (board != null) return board;
+        ContestBoard loaded = load(contestId);
+        if (loaded == null) return new ContestBoard();
+        board = boards.putIfAbsent(contestId, loaded);
+        return board != null ? board : loaded;
+    }
+
+    private ContestBoard load(String contestId) {
+        if (!contestRepository.existsById(contestId)) return null;
+        List<String> problemIds = problemRepository.findByContestId(contestId).stream().map(Problem::getId).toList();
+        if (problemIds.isEmpty()) return null;
+        ContestBoard board = new ContestBoard();
+
+        // the per-(user, problem) max is computed in Mongo; only one row per user comes back
+        for (UserProblemScores row : submissionRepository.aggregateBestScores(problemIds)) {
+            board.addUser(row.getUserId(), row.getUsername());
+            row.getBest().forEach((problemId, score) -> board.record(row.getUserId(), problemId, score));
+        }
+        return board;
+    }
+
+    public record RankedEntry(LeaderboardEntry entry, int rank, int participants) {}
+
+    private record RankKey(int total, String userId) {}
+
+    private static final Comparator<RankKey> ORDER = Comparator
+            .comparingInt(RankKey::total).reversed()
+            .thenComparing(RankKey::userId);
+
+    static class ContestBoard {
+        private final Map<String, Row> rows = new HashMap<>();
+        private final RankTree<RankKey> ranking = new RankTree<>(ORDER);
+        private long version;
+
+        synchronized boolean hasUser(String userId) {
+            return rows.containsKey(userId);
+        }
+
+        synchronized void addUser(String userId, String username) {
+            if (rows.containsKey(userId)) return;
+            Row row = new Row(username);
+            rows.put(userId, row);
+            ranking.insert(new RankKey(0, userId));
+            version++;
+        }
+
+        synchronized boolean record(String userId, String problemId, int score) {
+            Row row = rows.get(userId);
+            if (row == null) return false;
+            int previous = row.best.getOrDefault(problemId, 0);
+            if (row.best.containsKey(problemId) && score <= previous) return false;
+            row.best.put(problemId, Math.max(previous, score));
+            if (score > previous) {
+                ranking.remove(new RankKey(row.total, userId));
+                row.total += score - previous;
+                ranking.insert(new RankKey(row.total, userId));
+            }
+            version++;
+            return true;
+        }
+
+        synchronized List<LeaderboardEntry> page(int offset, int limit) {
+            return ranking.range(Math.max(0, offset), Math.max(0, limit)).stream()
+                    .map(k -> new LeaderboardEntry(k.userId(), rows.get(k.userId()).username, k.total()))
+                    .toList();
+        }
+
+        synchronized Optional<RankedEntry> rankOf(String userId) {
+            Row row = rows.get(userId);
+            if (row == null) return Optional.empty();
+            // everyone with a strictly higher total sorts before (total, "")
+            int rank = ranking.rank(new RankKey(row.total, "")) + 1;
+            return Optional.of(new RankedEntry(new LeaderboardEntry(userId, row.username, row.total), rank, rows.size()));
+        }
+
+        synchronized long version() {
+            return version;
+        }
+    }
+
+    private static final class Row {
+        final String username;
+        final Map<String, Integer> best = new HashMap<>();
+        int total;
+
+        Row(String username) {
+            this.username = username;
+        }
+    }
+}
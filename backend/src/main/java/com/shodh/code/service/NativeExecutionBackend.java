@@ -0,0 +1,260 @@
+package com.shodh.code.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+
+// Runs submissions directly on a Linux judge host, without Docker: every compile/test command goes
+// through a generated wrapper (sbx.sh) that starts it in fresh user/mount/pid/net/ipc/uts namespaces
+// with rlimits, inside its own cgroup v2 (memory, CPU quota, pids). Without a delegated cgroup it
+// refuses to start unless sandbox.native.require-cgroups=false, which swaps in address-space and
+// process-count rlimits. The program gets a fresh root holding only read-only binds of sandbox.native.rootfs,
+// the workspace at /tmp/app (read-only for tests) and a private tmpfs /tmp, and runs as an
+// unprivileged user with no capabilities (a JVM running as root first drops to
+// sandbox.native.run-as-uid). The language runtimes must be installed under one of the rootfs dirs.
+@Service
+@ConditionalOnProperty(name = "judge.backend", havingValue = "native")
+public class NativeExecutionBackend implements StreamingExecutionBackend {
+    private final ProcessRunner processRunner;
+    private final WorkspacePool workspacePool;
+    private final Path root;
+    private final Path wrapper;
+    private final List<Path> hidden;
+    private final List<String> rootfs;
+    private final int runAsUid;
+    private final boolean requireCgroups;
+    private final Path cgroupRoot;
+    private final long memoryBytes;
+    private final double cpus;
+    private final int pidsMax;
+    private final int cpuSeconds;
+    private final long fileSizeBytes;
+    private final int tmpMegabytes;
+    private boolean cgroups;
+
+    public NativeExecutionBackend(ProcessRunner processRunner,
+                                  WorkspacePool workspacePool,
+                                  @Value("${sandbox.workspace-root:backend/tmp-exec}") String workspaceRoot,
+                                  @Value("${judge.test-cache.dir:backend/tmp-tests}") String testCacheDir,
+                                  @Value("${sandbox.native.cgroup-root:/sys/fs/cgroup/shodh}") String cgroupRoot,
+                                  @Value("${sandbox.native.memory-mb:256}") long memoryMegabytes,
+                                  @Value("${sandbox.native.cpus:1}") double cpus,
+                                  @Value("${sandbox.native.pids-max:64}") int pidsMax,
+                                  @Value("${sandbox.native.cpu-seconds:20}") int cpuSeconds,
+                                  @Value("${sandbox.native.file-size-mb:64}") long fileSizeMegabytes,
+                                  @Value("${sandbox.native.tmp-mb:64}") int tmpMegabytes,
+                                  @Value("${sandbox.native.rootfs:/usr,/bin,/sbin,/lib,/lib32,/lib64,/etc,/opt}") List<String> rootfs,
+                                  @Value("${sandbox.native.run-as-uid:65534}") int runAsUid,
+                                  @Value("${sandbox.native.require-cgroups:true}") boolean requireCgroups) {
+        this.processRunner = processRunner;
+        this.workspacePool = workspacePool;
+        Path workspaces = Paths.get(workspaceRoot).toAbsolutePath().normalize();
+        this.root = workspacePool.getRoot();
+        this.wrapper = workspaces.resolve("native-bin").resolve("sbx.sh");
+        this.hidden = root.equals(workspaces)
+                ? List.of(workspaces, Paths.get(testCacheDir).toAbsolutePath().normalize())
+                : List.of(workspaces, root, Paths.get(testCacheDir).toAbsolutePath().normalize());
+        this.cgroupRoot = Paths.get(cgroupRoot);
+        this.memoryBytes = memoryMegabytes * 1024 * 1024;
+        this.cpus = cpus;
+        this.pidsMax = pidsMax;
+        this.cpuSeconds = cpuSeconds;
+        this.fileSizeBytes = fileSizeMegabytes * 1024 * 1024;
+        this.tmpMegabytes = tmpMegabytes;
+        this.rootfs = rootfs;
+        this.runAsUid = runAsUid;
+        this.requireCgroups = requireCgroups;
+        // the sandbox mounts its own /tmp, which would hide a workspace living under it
+        if (workspaces.startsWith("/tmp") || root.startsWith("/tmp")) {
+            throw new IllegalStateException("sandbox workspaces must not be under /tmp for the native backend");
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException, InterruptedException {
+        Files.createDirectories(root);
+        cgroups = setUpCgroups();
+        if (!cgroups && requireCgroups) {
+            throw new IllegalStateException("native sandbox needs a writable cgroup v2 at " + cgroupRoot
+                    + " for memory and process limits (sandbox.native.require-cgroups=false falls back to rlimits)");
+        }
+        Files.createDirectories(wrapper.getParent());
+        Files.writeString(wrapper, wrapperScript(), StandardCharsets.UTF_8);
+        Files.setPosixFilePermissions(wrapper, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        // fail at startup rather than on the first submission if namespaces aren't usable
+        Path probeDir = workspacePool.acquire();
+        ProcessRunner.ExecResult probe;
+        try {
+            probe = processRunner.spawn("cd " + quote(probeDir.toString()) + " && " + quote(wrapper.toString()) + " ro probe - true", Duration.ofSeconds(10));
+        } finally {
+            workspacePool.release(probeDir);
+        }
+        if (probe.code != 0) {
+            throw new IllegalStateException("native sandbox unavailable (needs unshare with user namespaces, pivot_root, setpriv and prlimit): " + probe.output);
+        }
+        System.out.println("[sandbox] native backend ready, cgroup limits " + (cgroups
+                ? "on (" + cgroupRoot + ": memory=" + memoryBytes / (1024 * 1024) + "MB cpus=" + cpus + " pids=" + pidsMax + ")"
+                : "OFF (no writable cgroup v2 at " + cgroupRoot + "): address space and process count limited by rlimits only, no CPU quota"));
+    }
+
+    @Override
+    public SandboxLease lease(String image, String submissionId) throws IOException {
+        return new SandboxLease(image, workspacePool.acquire(), null);
+    }
+
+    @Override
+    public void release(SandboxLease lease) {
+        workspacePool.release(lease.getWorkDir(), !lease.isBroken());
+    }
+
+    @Override
+    public ProcessRunner.ExecResult exec(SandboxLease lease, String command, Duration timeout) throws IOException, InterruptedException {
+        return processRunner.spawn("cd " + quote(lease.getWorkDir().toString()) + " && " + sandboxed("rw", "compile", "-", command), timeout, this::removeStaleCgroups);
+    }
+
+    @Override
+    public SandboxRunResult runBatch(SandboxLease lease, String language, String compile, List<Integer> tests,
+                                     int batchNo, boolean failFast) throws IOException, InterruptedException {
+        Path dir = lease.getWorkDir();
+        String script = BatchScript.build(quote(dir.toString()),
+                compile == null ? null : sandboxed("rw", "compile", "-", compile),
+                sandboxed("ro", "test$i", "stats$i.txt", runCommand(language)),
+                tests, batchNo, failFast, false);
+        Path scriptFile = dir.resolve("judge-" + batchNo + ".sh");
+        Files.writeString(scriptFile, script, StandardCharsets.UTF_8);
+        ProcessRunner.ExecResult res = processRunner.spawn("sh " + quote(scriptFile.toString()), BatchScript.budget(compile != null, tests.size()), this::removeStaleCgroups);
+        return BatchScript.parse(dir, compile != null, tests, batchNo, failFast, res);
+    }
+
+    // cgroup CPU and peak memory land in stats<i>.txt as in batch mode; stdin and stdout pass
+    // straight through sbx.sh
+    @Override
+    public ProcessRunner.Piped startTest(SandboxLease lease, String language, int test, Path input) throws IOException {
+        String command = "cd " + quote(lease.getWorkDir().toString()) + " && "
+                + sandboxed("ro", "test" + test, "stats" + test + ".txt", "sh -c " + quote(BatchScript.streamedRun(runCommand(language))));
+        return processRunner.pipe(command, input, BatchScript.budget(false, 1), this::removeStaleCgroups);
+    }
+
+    // On timeout the supervisor kills the whole process tree, so sbx.sh never removes its cgroup;
+    // rmdir only succeeds on cgroups with no processes left, so live ones are untouched.
+    private void removeStaleCgroups() {
+        if (!cgroups) return;
+        processRunner.runInBackground("sleep 1; for d in " + quote(cgroupRoot.toString()) + "/*/; do rmdir \"$d\" 2>/dev/null; done; true");
+    }
+
+    private String sandboxed(String mode, String name, String statsFile, String command) {
+        return quote(wrapper.toString()) + " " + mode + " " + name + " " + statsFile + " " + command;
+    }
+
+    private static String runCommand(String language) {
+        return "python".equals(language) ? "python3 solution.py" : "java Solution";
+    }
+
+    // Creates the parent cgroup and enables the controllers for its children. Needs cgroup v2 with
+    // the parent delegated to this user (or root).
+    private boolean setUpCgroups() {
+        try {
+            Path parent = cgroupRoot.getParent();
+            if (parent == null || !Files.exists(parent.resolve("cgroup.controllers"))) return false;
+            Files.createDirectories(cgroupRoot);
+            String available = Files.readString(cgroupRoot.resolve("cgroup.controllers"));
+            for (String c : List.of("cpu", "memory", "pids")) {
+                if (!(" " + available.trim() + " ").contains(" " + c + " ")) return false;
+            }
+            Files.writeString(cgroupRoot.resolve("cgroup.subtree_control"), "+cpu +memory +pids");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[sandbox] cgroup setup at " + cgroupRoot + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // usage: sbx.sh ro|rw <name> <stats file|-> command...
+    // Runs from the workspace directory; stdin/stdout/stderr pass straight through. The new root is
+    // put together on a tmpfs mounted over /tmp, pivoted into and made read-only; the workspace is
+    // bound through /proc/self/cwd, so an unprivileged uid needs no access to its parent dirs. The
+    // command finally runs in a nested user namespace without mappings: uid nobody, no capabilities,
+    // so it can't undo any of the mounts.
+    private String wrapperScript() {
+        StringBuilder hide = new StringBuilder();
+        for (Path p : hidden) hide.append(' ').append(quote(p.toString()));
+        StringBuilder dirs = new StringBuilder();
+        for (String d : rootfs) dirs.append(' ').append(quote(d.trim()));
+        String cgroup = cgroups ? quote(cgroupRoot.toString()) : "";
+        // without a cgroup: address space instead of memory, and RLIMIT_NPROC, which counts per user
+        // namespace (each sandbox has its own) on kernels from 5.14
+        String fallback = cgroups ? "" : " --as=" + memoryBytes + " --nproc=" + pidsMax;
+        return """
+                #!/bin/sh
+                # generated by NativeExecutionBackend
+                mode=$1; name=$2; stats=$3; shift 3
+                cg=
+                CGROOT=%s
+                if [ -n "$CGROOT" ] && mkdir "$CGROOT/$name-$$" 2>/dev/null; then
+                  cg=$CGROOT/$name-$$
+                  echo %d > "$cg/memory.max"
+                  echo 0 > "$cg/memory.swap.max" 2>/dev/null
+                  echo "%d 100000" > "$cg/cpu.max"
+                  echo %d > "$cg/pids.max"
+                fi
+                # as root, the namespace's root is mapped to an unprivileged uid, which needs the workspace writable
+                drop=
+                if [ "$(id -u)" = 0 ]; then
+                  drop="setpriv --reuid=%d --regid=%d --clear-groups --"
+                  chmod 0777 . || exit 125
+                fi
+                # background jobs get /dev/null as stdin unless it's passed explicitly
+                exec 3<&0
+                sh -c '[ -n "$1" ] && echo $$ > "$1/cgroup.procs"; shift; exec "$@"' sbx "$cg" $drop \
+                  unshare --user --map-root-user --mount --pid --fork --kill-child --mount-proc --net --ipc --uts \
+                  sh -c 'mode=$1; shift
+                    r=/tmp
+                    mount -t tmpfs -o size=1m,mode=0755 tmpfs $r || exit 125
+                    for d in%s; do
+                      if [ -L "$d" ]; then ln -s "$(readlink "$d")" "$r$d" || exit 125
+                      elif [ -d "$d" ]; then mkdir -p "$r$d" && mount --bind "$d" "$r$d" && mount -o remount,bind,ro,nosuid,nodev "$r$d" || exit 125; fi
+                    done
+                    mkdir "$r/proc" "$r/dev" "$r/tmp" "$r/.old" || exit 125
+                    mount -t proc proc "$r/proc" || exit 125
+                    for n in null zero random urandom; do : > "$r/dev/$n" && mount --bind "/dev/$n" "$r/dev/$n" || exit 125; done
+                    mount -t tmpfs -o size=%dm,mode=1777 tmpfs "$r/tmp" || exit 125
+                    mkdir "$r/tmp/app" && mount --bind /proc/self/cwd "$r/tmp/app" || exit 125
+                    if [ "$mode" = ro ]; then mount -o remount,bind,ro "$r/tmp/app" || exit 125; fi
+                    for h in%s; do [ -d "$r$h" ] && { mount -t tmpfs -o size=4k,mode=0555 tmpfs "$r$h" || exit 125; }; done
+                    cd "$r" && pivot_root . .old && umount -l /.old && rmdir /.old || exit 125
+                    mount -o remount,bind,ro / || exit 125
+                    cd /tmp/app || exit 125
+                    exec prlimit --cpu=%d --fsize=%d --nofile=256 --core=0%s -- unshare --user -- "$@"' sandbox "$mode" "$@" <&3 3<&- &
+                child=$!
+                trap 'kill -KILL $child 2>/dev/null; [ -n "$cg" ] && echo 1 > "$cg/cgroup.kill" 2>/dev/null; exit 143' TERM INT
+                wait $child
+                rc=$?
+                if [ -n "$cg" ]; then
+                  if [ "$stats" != - ]; then
+                    usec=$(sed -n 's/^usage_usec //p' "$cg/cpu.stat" 2>/dev/null)
+                    peak=$(cat "$cg/memory.peak" 2>/dev/null)
+                    echo "$(( ${usec:-0} / 1000 )) $(( ${peak:-0} / 1024 ))" > "$stats"
+                  fi
+                  echo 1 > "$cg/cgroup.kill" 2>/dev/null
+                  for _ in 1 2 3 4 5; do rmdir "$cg" 2>/dev/null && break; sleep 0.01; done
+                fi
+                exit $rc
+                """.formatted(cgroup, memoryBytes, Math.max(1000, Math.round(cpus * 100_000)), pidsMax, runAsUid, runAsUid,
+                dirs, tmpMegabytes, hide, cpuSeconds, fileSizeBytes, fallback);
+    }
+
+    private static String quote(String s) {
+        return "'" + s.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,52 @@
+package com.shodh.code.service;
+
+import java.nio.charset.StandardCharsets;
+
+// Fixed-size ring buffer for a process's output: keeps the last `capacity` bytes and counts what
+// was dropped, so a chatty or malicious process can't grow the judge's heap.
+final class OutputBuffer {
+    private final byte[] ring;
+    private int start;
+    private int size;
+    private long dropped;
+
+    OutputBuffer(int capacity) {
+        this.ring = new byte[Math.max(1, capacity)];
+    }
+
+    void write(byte[] b, int off, int len) {
+        if (len >= ring.length) {
+            // only the tail of this chunk survives
+            dropped += size + (len - ring.length);
+            System.arraycopy(b, off + len - ring.length, ring, 0, ring.length);
+            start = 0;
+            size = ring.length;
+            return;
+        }
+        int overflow = size + len - ring.length;
+        if (overflow > 0) {
+            start = (start + overflow) % ring.length;
+            size -= overflow;
+            dropped += overflow;
+        }
+        int end = (start + size) % ring.length;
+        int first = Math.min(len, ring.length - end);
+        System.arraycopy(b, off, ring, end, first);
+        System.arraycopy(b, off + first, ring, 0, len - first);
+        size += len;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        byte[] out = new byte[size];
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, out, 0, first);
+        System.arraycopy(ring, 0, out, first, size - first);
+        String text = new String(out, StandardCharsets.UTF_8);
+        return dropped == 0 ? text : "[... " + dropped + " bytes of earlier output dropped ...]\n" + text;
+    }
+}
@@ -1,28 +1,112 @@
 package com.shodh.code.service;
 
+import com.shodh.code.dto.ProblemDto;
 import com.shodh.code.model.Problem;
 import com.shodh.code.repository.ProblemRepository;
-import lombok.RequiredArgsConstructor;
+import com.shodh.code.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
+// Problems barely change during a contest, so lookups by id and by contest are served from a
+// bounded read-through cache. Writes go through this service and invalidate explicitly; the TTL
+// only bounds staleness for edits made behind its back (e.g. directly in Mongo).
 @Service
-@RequiredArgsConstructor
 public class ProblemService {
+    private static final String ALL = "*";
 
     private final ProblemRepository problemRepository;
+    private final TestDataService testDataService;
+    private final BoundedCache<String, Problem> byId;
+    // problem summaries per contest, plus ALL for the full listing
+    private final BoundedCache<String, List<ProblemDto>> summaries;
+
+    public ProblemService(ProblemRepository problemRepository,
+                          TestDataService testDataService,
+                          CacheRegistry cacheRegistry,
+                          @Value("${cache.problems.max-size:1000}") int maxSize,
+                          @Value("${cache.ttl-seconds:300}") long ttlSeconds) {
+        this.problemRepository = problemRepository;
+        this.testDataService = testDataService;
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.byId = cacheRegistry.register("problems", new BoundedCache<>(maxSize, ttl));
+        this.summaries = cacheRegistry.register("problemSummaries", new BoundedCache<>(maxSize, ttl));
+    }
 
     public Problem create(Problem problem) {
-        return problemRepository.save(problem);
+        problem.setTestSet(null);
+        problem.setTestSetVersion(1);
+        testDataService.externalize(problem);
+        Problem saved = problemRepository.save(problem);
+        invalidate(saved.getId(), saved.getContestId());
+        return saved;
     }
 
-    public List<Problem> getAll() {
-        return problemRepository.findAll();
+    public List<ProblemDto> getAllSummaries() {
+        return summaries.getOrLoad(ALL, k -> List.copyOf(problemRepository.findAllSummaries()));
     }
 
     public Optional<Problem> getById(String id) {
-        return problemRepository.findById(id);
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(byId.getOrLoad(id, k -> problemRepository.findById(k).orElse(null)));
+    }
+
+    public List<ProblemDto> getSummariesByContestId(String contestId) {
+        if (contestId == null) return List.of();
+        return summaries.getOrLoad(contestId, k -> List.copyOf(problemRepository.findSummariesByContestId(k)));
+    }
+
+    public Optional<Problem> update(String id, Problem update) {
+        return problemRepository.findById(id).map(existing -> {
+            String oldContestId = existing.getContestId();
+            // scoring and checker settings change verdicts just like new tests do, so cached
+            // verdicts for the old settings must stop matching
+            boolean verdictsChange = !Objects.equals(existing.getMaxScore(), update.getMaxScore())
+                    || !Objects.equals(existing.getFailFast(), update.getFailFast())
+                    || !Objects.equals(existing.getChecker(), update.getChecker())
+                    || !Objects.equals(existing.getCheckerTolerance(), update.getCheckerTolerance());
+            existing.setTitle(update.getTitle());
+            existing.setDescription(update.getDescription());
+            existing.setContestId(update.getContestId());
+            existing.setMaxScore(update.getMaxScore());
+            existing.setFailFast(update.getFailFast());
+            existing.setChecker(update.getChecker());
+            existing.setCheckerTolerance(update.getCheckerTolerance());
+            if (verdictsChange) {
+                existing.setTestSetVersion((existing.getTestSetVersion() == null ? 1 : existing.getTestSetVersion()) + 1);
+            }
+            Problem saved = problemRepository.save(existing);
+            invalidate(id, oldContestId);
+            invalidate(id, saved.getContestId());
+            return saved;
+        });
+    }
+
+    // Replaces the test set; the new manifest gets the next testSetVersion.
+    public Optional<Problem> replaceTests(String id, List<String> inputs, List<String> outputs) {
+        return problemRepository.findById(id).map(problem -> {
+            problem.setInputTestCases(inputs == null ? List.of() : inputs);
+            problem.setOutputTestCases(outputs == null ? List.of() : outputs);
+            testDataService.externalize(problem);
+            Problem saved = problemRepository.save(problem);
+            invalidate(id, saved.getContestId());
+            return saved;
+        });
+    }
+
+    public void delete(String id) {
+        String contestId = problemRepository.findById(id).map(Problem::getContestId).orElse(null);
+        problemRepository.deleteById(id);
+        invalidate(id, contestId);
+    }
+
+    private void invalidate(String id, String contestId) {
+        byId.invalidate(id);
+        if (contestId != null) summaries.invalidate(contestId);
+        summaries.invalidate(ALL);
     }
 }
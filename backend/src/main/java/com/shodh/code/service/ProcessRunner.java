@@ -0,0 +1,257 @@
+package com.shodh.code.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Starts host commands and supervises them from a single thread: output is drained (without
+// blocking) into a capped ring buffer, and a command still running at its deadline is killed
+// together with its descendants, plus an optional cleanup (e.g. removing the container it drives).
+// pipe() instead hands stdout to the caller and feeds stdin from a file, for streamed test runs.
+@Component
+public class ProcessRunner {
+    private static final Duration PROCESS_TIMEOUT = Duration.ofSeconds(20);
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+    // poll interval backs off from MIN to MAX while no output arrives; exits wake the supervisor
+    // right away through onExit
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // per process per pass, so one flooding process can't starve the rest
+    private static final int MAX_READ_PER_PASS = 64 * 1024;
+
+    private final int outputCapBytes;
+    private final Queue<Supervised> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread supervisor;
+
+    public ProcessRunner(@Value("${process.output-cap-kb:256}") int outputCapKb) {
+        this.outputCapBytes = outputCapKb * 1024;
+        this.supervisor = new Thread(this::supervise, "process-supervisor");
+        this.supervisor.setDaemon(true);
+        this.supervisor.start();
+    }
+
+    public ExecResult spawn(String fullCommand) throws IOException, InterruptedException {
+        return spawn(fullCommand, PROCESS_TIMEOUT);
+    }
+
+    public ExecResult spawn(String fullCommand, Duration timeout) throws IOException, InterruptedException {
+        return spawn(fullCommand, timeout, null);
+    }
+
+    // Waits for the result; code is -1 if the command was killed at the deadline.
+    public ExecResult spawn(String fullCommand, Duration timeout, Runnable onTimeout) throws IOException, InterruptedException {
+        return launch(fullCommand, null, false, timeout, onTimeout).await(fullCommand);
+    }
+
+    public CompletableFuture<ExecResult> start(String fullCommand, Duration timeout, Runnable onTimeout) throws IOException {
+        return launch(fullCommand, null, false, timeout, onTimeout).result;
+    }
+
+    // The command reads `input` as its stdin and its stdout is left to the caller, who must keep
+    // reading it (a full pipe blocks the command); only stderr goes to the capped buffer. Deadline
+    // and kill work as for spawn.
+    public Piped pipe(String fullCommand, Path input, Duration timeout, Runnable onTimeout) throws IOException {
+        return new Piped(fullCommand, launch(fullCommand, input, true, timeout, onTimeout));
+    }
+
+    // Fire-and-forget (cleanup commands); failures are only logged.
+    public void runInBackground(String fullCommand) {
+        try {
+            start(fullCommand, PROCESS_TIMEOUT, null).whenComplete((res, err) -> {
+                if (err != null || res.code != 0) {
+                    System.out.println("[process] '" + fullCommand + "' failed: " + (err != null ? err.getMessage() : res.output.trim()));
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("[process] could not start '" + fullCommand + "': " + e.getMessage());
+        }
+    }
+
+    private Supervised launch(String fullCommand, Path input, boolean pipeStdout, Duration timeout, Runnable onTimeout) throws IOException {
+        ProcessBuilder pb = WINDOWS
+                ? new ProcessBuilder("cmd", "/c", fullCommand)
+                : new ProcessBuilder("sh", "-c", fullCommand);
+        pb.redirectErrorStream(!pipeStdout);
+        // the child opens the file itself; nothing is copied through the JVM
+        if (input != null) pb.redirectInput(input.toFile());
+        Process p = pb.start();
+        // otherwise EOF instead of a pipe nobody writes to
+        p.getOutputStream().close();
+        Supervised s = new Supervised(p, pipeStdout ? p.getErrorStream() : p.getInputStream(),
+                new OutputBuffer(outputCapBytes), System.nanoTime() + timeout.toNanos(), onTimeout);
+        incoming.add(s);
+        p.onExit().thenRun(() -> LockSupport.unpark(supervisor));
+        LockSupport.unpark(supervisor);
+        return s;
+    }
+
+    private void supervise() {
+        List<Supervised> running = new ArrayList<>();
+        byte[] chunk = new byte[8192];
+        long park = MIN_PARK_NANOS;
+        while (true) {
+            for (Supervised s; (s = incoming.poll()) != null; ) running.add(s);
+            boolean busy = false;
+            long now = System.nanoTime();
+            for (Iterator<Supervised> it = running.iterator(); it.hasNext(); ) {
+                Supervised s = it.next();
+                try {
+                    busy |= s.drain(chunk, MAX_READ_PER_PASS);
+                    if (!s.process.isAlive()) {
+                        // whatever is still in the pipe was written before exit
+                        while (s.drain(chunk, Integer.MAX_VALUE)) { }
+                        s.finish();
+                        it.remove();
+                    } else if (!s.killed && now - s.deadline > 0) {
+                        s.kill();
+                    }
+                } catch (Throwable e) {
+                    // destroying a process closes its streams, so a read racing a kill fails
+                    if (s.killed) {
+                        s.finish();
+                    } else {
+                        s.process.destroyForcibly();
+                        s.close();
+                        s.result.completeExceptionally(e);
+                    }
+                    it.remove();
+                }
+            }
+            if (busy) {
+                park = MIN_PARK_NANOS;
+            } else {
+                LockSupport.parkNanos(park);
+                park = Math.min(park * 2, MAX_PARK_NANOS);
+            }
+        }
+    }
+
+    public static String resolveDockerMountPath(Path path) {
+        String abs = path.toAbsolutePath().toString();
+        // Windows -> convert C:\path -> /c/path for Docker, but Docker Desktop often accepts C:/... as well.
+        if (WINDOWS) {
+            abs = abs.replace("\\", "/");
+            // If starts with "C:/", convert to "/c/..."
+            if (abs.length() > 1 && abs.charAt(1) == ':') {
+                char drive = Character.toLowerCase(abs.charAt(0));
+                abs = "/" + drive + abs.substring(2);
+            }
+        }
+        return abs;
+    }
+
+    public static class ExecResult {
+        final int code;
+        final String output;
+        ExecResult(int code, String output) { this.code = code; this.output = output; }
+    }
+
+    // A running pipe(): read stdout() to the end, then await() the exit code and stderr.
+    public static final class Piped {
+        private final String command;
+        private final Supervised supervised;
+
+        private Piped(String command, Supervised supervised) {
+            this.command = command;
+            this.supervised = supervised;
+        }
+
+        public InputStream stdout() {
+            return supervised.process.getInputStream();
+        }
+
+        // killed at the deadline (stdout may have been closed under a reader)
+        public boolean killed() {
+            return supervised.killed;
+        }
+
+        public ExecResult await() throws IOException, InterruptedException {
+            return supervised.await(command);
+        }
+    }
+
+    // Owned by the supervisor thread, except kill() which may also come from an interrupted caller.
+    private static final class Supervised {
+        final Process process;
+        final InputStream out;
+        final OutputBuffer buffer;
+        final long deadline;
+        final Runnable onTimeout;
+        final CompletableFuture<ExecResult> result = new CompletableFuture<>();
+        volatile boolean killed;
+
+        Supervised(Process process, InputStream out, OutputBuffer buffer, long deadline, Runnable onTimeout) {
+            this.process = process;
+            this.out = out;
+            this.buffer = buffer;
+            this.deadline = deadline;
+            this.onTimeout = onTimeout;
+        }
+
+        // reads only what's available, so it never blocks; output stops at a kill
+        boolean drain(byte[] chunk, int limit) throws IOException {
+            if (killed) return false;
+            int total = 0;
+            int n;
+            while (total < limit && (n = out.available()) > 0) {
+                int r = out.read(chunk, 0, Math.min(n, chunk.length));
+                if (r <= 0) break;
+                buffer.write(chunk, 0, r);
+                total += r;
+            }
+            return total > 0;
+        }
+
+        ExecResult await(String command) throws IOException, InterruptedException {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                throw new IOException("supervising '" + command + "' failed", e.getCause());
+            } catch (InterruptedException e) {
+                // nobody is waiting for it any more
+                kill();
+                throw e;
+            }
+        }
+
+        synchronized void kill() {
+            if (killed) return;
+            killed = true;
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            if (onTimeout != null) {
+                try {
+                    onTimeout.run();
+                } catch (RuntimeException e) {
+                    System.out.println("[process] timeout cleanup failed: " + e.getMessage());
+                }
+            }
+        }
+
+        void finish() {
+            close();
+            result.complete(new ExecResult(killed ? -1 : process.exitValue(), buffer.toString()));
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
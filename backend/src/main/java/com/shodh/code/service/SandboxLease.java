@@ -0,0 +1,71 @@
+package com.shodh.code.service;
+
+import java.nio.file.Path;
+
+// A sandbox handed to one submission: either a warm pooled container (commands go through
+// docker exec) or, when the pool is empty/disabled, a one-shot docker run per command.
+public class SandboxLease {
+    private final String image;
+    private final Path workDir;
+    private final SandboxPool.PooledContainer container;
+    // docker run flags of one-shot runs: the same isolation and limits as pooled containers
+    private final String runFlags;
+    private volatile boolean broken;
+
+    SandboxLease(String image, Path workDir, SandboxPool.PooledContainer container) {
+        this(image, workDir, container, "");
+    }
+
+    SandboxLease(String image, Path workDir, SandboxPool.PooledContainer container, String runFlags) {
+        this.image = image;
+        this.workDir = workDir;
+        this.container = container;
+        this.runFlags = runFlags;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    // Host directory mounted at /app inside the sandbox
+    public Path getWorkDir() {
+        return workDir;
+    }
+
+    public boolean isPooled() {
+        return container != null;
+    }
+
+    // Wraps an in-sandbox command (e.g. sh -c "cd /app && ...") into the host-side docker invocation.
+    // One-shot runs are named runName so they can be removed if the command has to be killed.
+    public String command(String innerCommand, String runName) {
+        return command(innerCommand, runName, false);
+    }
+
+    // withStdin: keep the command's stdin attached (-i) for streamed test input
+    public String command(String innerCommand, String runName, boolean withStdin) {
+        String i = withStdin ? "-i " : "";
+        if (container != null) {
+            return "docker exec " + i + container.name + " " + innerCommand;
+        }
+        return "docker run --rm " + i + "--name " + runName + " " + runFlags + " -v " + ProcessRunner.resolveDockerMountPath(workDir) + ":/app " + image + " " + innerCommand;
+    }
+
+    // Stops whatever command(..., runName) started; killing the docker client alone leaves it running
+    public String killCommand(String runName) {
+        return "docker rm -f " + (container != null ? container.name : runName);
+    }
+
+    // Marks a pooled container as unfit for reuse (e.g. a command timed out inside it)
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    SandboxPool.PooledContainer getContainer() {
+        return container;
+    }
+}
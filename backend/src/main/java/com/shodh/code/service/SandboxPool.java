@@ -0,0 +1,263 @@
+package com.shodh.code.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class SandboxPool {
+    private final ProcessRunner processRunner;
+    private final boolean enabled;
+    private final List<String> images;
+    private final int sizePerImage;
+    private final int maxUses;
+    private final long leaseWaitMillis;
+    private final long healthCheckSeconds;
+    private final WorkspacePool workspacePool;
+    // isolation and limits every sandbox container runs with, pooled or one-shot
+    private final String runFlags;
+
+    private final Map<String, BlockingQueue<PooledContainer>> idle = new ConcurrentHashMap<>();
+    private final Set<PooledContainer> all = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sandbox-pool");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed;
+    private final JudgeMetrics judgeMetrics;
+
+    public SandboxPool(ProcessRunner processRunner,
+                       JudgeMetrics judgeMetrics,
+                       WorkspacePool workspacePool,
+                       @Value("${sandbox.pool.enabled:true}") boolean enabled,
+                       @Value("${sandbox.pool.images:openjdk:17,python:3.11}") List<String> images,
+                       @Value("${sandbox.pool.size-per-image:2}") int sizePerImage,
+                       @Value("${sandbox.pool.max-uses:50}") int maxUses,
+                       @Value("${sandbox.pool.lease-wait-ms:2000}") long leaseWaitMillis,
+                       @Value("${sandbox.pool.health-check-seconds:30}") long healthCheckSeconds,
+                       @Value("${sandbox.docker.user:65534:65534}") String user,
+                       @Value("${sandbox.docker.memory-mb:256}") int memoryMegabytes,
+                       @Value("${sandbox.docker.cpus:1}") double cpus,
+                       @Value("${sandbox.docker.pids-limit:64}") int pidsLimit,
+                       @Value("${sandbox.docker.tmp-mb:64}") int tmpMegabytes) {
+        this.processRunner = processRunner;
+        this.judgeMetrics = judgeMetrics;
+        this.enabled = enabled;
+        this.images = images;
+        this.sizePerImage = sizePerImage;
+        this.maxUses = maxUses;
+        this.leaseWaitMillis = leaseWaitMillis;
+        this.healthCheckSeconds = healthCheckSeconds;
+        this.workspacePool = workspacePool;
+        // read-only root and an unprivileged user: a pooled container outlives the submission, so
+        // nothing it runs may leave files (or anything else) behind outside /app, /tmp and /dev/shm,
+        // which scrub() empties
+        this.runFlags = "--network none --read-only --tmpfs /tmp:rw,nosuid,size=" + tmpMegabytes + "m"
+                + " --user " + user + " --cap-drop ALL --security-opt no-new-privileges"
+                + " --memory " + memoryMegabytes + "m --memory-swap " + memoryMegabytes + "m"
+                + " --pids-limit " + pidsLimit + " --cpus " + cpus;
+    }
+
+    @PostConstruct
+    public void start() {
+        judgeMetrics.gauge("judge.sandbox.idle", "Warm pool containers waiting for a lease", idle,
+                m -> m.values().stream().mapToInt(BlockingQueue::size).sum());
+        if (!enabled) return;
+        for (String image : images) {
+            idle.put(image, new LinkedBlockingQueue<>());
+            for (int i = 0; i < sizePerImage; i++) {
+                // warm up in the background so a slow image pull doesn't block startup
+                maintenance.execute(() -> replenish(image));
+            }
+        }
+        maintenance.scheduleWithFixedDelay(this::healthCheck, healthCheckSeconds, healthCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    // Falls back to a one-shot workspace (docker run --rm per command) if no warm container frees up in time.
+    public SandboxLease lease(String image, String submissionId) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<PooledContainer> queue = idle.get(image);
+        if (queue != null) {
+            PooledContainer c = queue.poll(leaseWaitMillis, TimeUnit.MILLISECONDS);
+            if (c != null) {
+                c.uses++;
+                judgeMetrics.recordSandbox("lease", "pooled", System.nanoTime() - start);
+                return new SandboxLease(image, c.hostDir, c);
+            }
+        }
+        Path dir = workspacePool.acquire();
+        openToSandboxUser(dir);
+        judgeMetrics.recordSandbox("lease", "ephemeral", System.nanoTime() - start);
+        return new SandboxLease(image, dir, null, runFlags);
+    }
+
+    public void release(SandboxLease lease) {
+        PooledContainer c = lease.getContainer();
+        if (c == null) {
+            workspacePool.release(lease.getWorkDir(), !lease.isBroken());
+            return;
+        }
+        boolean reusable = !closed && !lease.isBroken() && c.uses < maxUses && scrub(c);
+        if (reusable) {
+            idle.get(c.image).offer(c);
+        } else {
+            destroy(c);
+            if (!closed) maintenance.execute(() -> replenish(c.image));
+        }
+    }
+
+    private void replenish(String image) {
+        if (closed) return;
+        String name = "shodh-sbx-" + sanitize(image) + "-" + UUID.randomUUID().toString().substring(0, 8);
+        Path hostDir = workspacePool.getRoot().resolve("pool").resolve(name);
+        try {
+            Files.createDirectories(hostDir);
+            openToSandboxUser(hostDir);
+            String cmd = "docker run -d --name " + name + " --label shodh.sandbox=pool " + runFlags
+                    + " -v " + ProcessRunner.resolveDockerMountPath(hostDir) + ":/app -w /app "
+                    + image + " sleep infinity";
+            long start = System.nanoTime();
+            ProcessRunner.ExecResult res = processRunner.spawn(cmd);
+            judgeMetrics.recordSandbox("spawn", res.code == 0 ? "ok" : "failed", System.nanoTime() - start);
+            if (res.code != 0) {
+                System.out.println("[sandbox] could not start " + image + " container: " + res.output.trim());
+                deleteRecursively(hostDir);
+                return;
+            }
+            PooledContainer c = new PooledContainer(name, image, hostDir);
+            all.add(c);
+            idle.get(image).offer(c);
+        } catch (IOException e) {
+            System.out.println("[sandbox] could not start " + image + " container: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Kill anything the previous submission left running and wipe everything it could write to.
+    private boolean scrub(PooledContainer c) {
+        try {
+            ProcessRunner.ExecResult res = processRunner.spawn("docker exec " + c.name
+                    + " sh -c \"kill -9 -1 2>/dev/null; rm -rf /tmp/* /tmp/.[!.]* /dev/shm/* /dev/shm/.[!.]* /app/* /app/.[!.]* 2>/dev/null; true\"");
+            return res.code == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void healthCheck() {
+        for (BlockingQueue<PooledContainer> queue : idle.values()) {
+            for (PooledContainer c : new ArrayList<>(queue)) {
+                if (!queue.remove(c)) continue; // leased in the meantime
+                if (isRunning(c)) {
+                    queue.offer(c);
+                } else {
+                    System.out.println("[sandbox] recycling unhealthy container " + c.name);
+                    destroy(c);
+                    replenish(c.image);
+                }
+            }
+        }
+    }
+
+    private boolean isRunning(PooledContainer c) {
+        try {
+            ProcessRunner.ExecResult res = processRunner.spawn("docker inspect -f {{.State.Running}} " + c.name);
+            return res.code == 0 && res.output.trim().toLowerCase(Locale.ROOT).equals("true");
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private void destroy(PooledContainer c) {
+        all.remove(c);
+        try {
+            processRunner.spawn("docker rm -f " + c.name);
+        } catch (IOException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try { deleteRecursively(c.hostDir); } catch (IOException ignored) {}
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        maintenance.shutdownNow();
+        for (PooledContainer c : new ArrayList<>(all)) {
+            destroy(c);
+        }
+    }
+
+    // The judge writes the workspace as its own user; the sandbox user has to write into it too.
+    static void openToSandboxUser(Path dir) throws IOException {
+        try {
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+        } catch (UnsupportedOperationException ignored) {
+            // not a POSIX filesystem (Docker Desktop on Windows): bind mounts are writable anyway
+        }
+    }
+
+    private static String sanitize(String s) {
+        if (s == null) return "x";
+        return s.replaceAll("[^a-zA-Z0-9-_]", "_");
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static class PooledContainer {
+        final String name;
+        final String image;
+        final Path hostDir;
+        int uses;
+
+        PooledContainer(String name, String image, Path hostDir) {
+            this.name = name;
+            this.image = image;
+            this.hostDir = hostDir;
+        }
+    }
+}
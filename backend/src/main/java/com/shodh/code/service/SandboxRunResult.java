@@ -0,0 +1,38 @@
+package com.shodh.code.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Everything one submission's sandbox run reports back: the compile step and one entry per test.
+public class SandboxRunResult {
+    int compileExitCode;
+    String compileOutput = "";
+    // -1 when the compile step wasn't timed (or didn't run in this invocation)
+    long compileMillis = -1;
+    final List<TestRun> tests = new ArrayList<>();
+
+    public boolean compiled() {
+        return compileExitCode == 0;
+    }
+
+    public static class TestRun {
+        final int index;
+        final int exitCode;
+        final long wallMillis;
+        final Path outputFile;
+        final String log;
+        boolean passed;
+        // null when the sandbox couldn't measure them
+        Long cpuMillis;
+        Long peakMemoryKb;
+
+        TestRun(int index, int exitCode, long wallMillis, Path outputFile, String log) {
+            this.index = index;
+            this.exitCode = exitCode;
+            this.wallMillis = wallMillis;
+            this.outputFile = outputFile;
+            this.log = log;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.SubmissionStatusChange;
+import com.shodh.code.repository.SubmissionRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Coalesces verdict writes: judge workers hand them over and one writer thread sends whatever has
+// queued up (up to max-batch) as a single unordered bulkWrite. An idle writer sends a lone verdict
+// straight away, so batches only form once verdicts arrive faster than Mongo takes them one by one.
+// Each caller gets a future telling whether its write passed the status guard.
+@Component
+public class StatusWriteBuffer {
+    private final SubmissionRepository submissionRepository;
+    private final boolean enabled;
+    private final int maxBatch;
+
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean stopping;
+
+    public StatusWriteBuffer(SubmissionRepository submissionRepository,
+                             @Value("${judge.status-writes.batch.enabled:false}") boolean enabled,
+                             @Value("${judge.status-writes.batch.max-size:100}") int maxBatch) {
+        this.submissionRepository = submissionRepository;
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.writer = new Thread(this::run, "status-writer");
+        this.writer.setDaemon(true);
+        if (enabled) writer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled && !stopping;
+    }
+
+    public CompletableFuture<Boolean> submit(SubmissionStatusChange change) {
+        Queued q = new Queued(change);
+        queue.add(q);
+        return q.applied;
+    }
+
+    // Judge workers are stopped before this (they depend on us), so whatever is queued is final.
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) return;
+        stopping = true;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        flush(drain());
+    }
+
+    private void run() {
+        while (!stopping) {
+            try {
+                // poll rather than take: the driver refuses to run on an interrupted thread, so the
+                // writer is never interrupted and checks `stopping` instead
+                Queued first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                List<Queued> batch = new ArrayList<>();
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private List<Queued> drain() {
+        List<Queued> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        return rest;
+    }
+
+    private void flush(List<Queued> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            Set<String> applied = submissionRepository.applyStatuses(batch.stream().map(q -> q.change).toList());
+            for (Queued q : batch) q.applied.complete(applied.contains(q.change.getId()));
+        } catch (RuntimeException e) {
+            System.out.println("[judge] writing " + batch.size() + " verdicts failed: " + e.getMessage());
+            for (Queued q : batch) q.applied.completeExceptionally(e);
+        }
+    }
+
+    private static final class Queued {
+        final SubmissionStatusChange change;
+        final CompletableFuture<Boolean> applied = new CompletableFuture<>();
+
+        Queued(SubmissionStatusChange change) {
+            this.change = change;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.shodh.code.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// A backend that can also run stream mode (judge.execution-mode=stream); the others fall back to
+// session mode.
+public interface StreamingExecutionBackend extends ExecutionBackend {
+
+    // Starts one test with `input` (the cached test file) as the program's stdin and its stdout
+    // returned as a pipe, so neither is copied into the workspace.
+    ProcessRunner.Piped startTest(SandboxLease lease, String language, int test, Path input) throws IOException;
+}
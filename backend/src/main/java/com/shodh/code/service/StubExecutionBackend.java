@@ -0,0 +1,154 @@
+package com.shodh.code.service;
+
+import com.shodh.code.util.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+// Fake sandbox for load testing without Docker: sleeps for a configurable compile/run latency and
+// picks each verdict from a seed derived from the submitted code, so the same code always gets the
+// same outcome (and the verdict cache behaves as it would in production). Passing tests copy the
+// expected output, so checking and scoring run for real.
+@Service
+@ConditionalOnProperty(name = "judge.backend", havingValue = "stub")
+public class StubExecutionBackend implements ExecutionBackend {
+    private static final int TIMEOUT_EXIT_CODE = 124;
+
+    private final WorkspacePool workspacePool;
+    private final long compileMillis;
+    private final long runMillis;
+    private final long timeoutMillis;
+    private final double jitter;
+    private final double compileErrorRate;
+    private final double timeoutRate;
+    private final double runtimeErrorRate;
+    private final double wrongAnswerRate;
+
+    public StubExecutionBackend(WorkspacePool workspacePool,
+                                @Value("${judge.stub.compile-ms:800}") long compileMillis,
+                                @Value("${judge.stub.run-ms:50}") long runMillis,
+                                @Value("${judge.stub.timeout-ms:5000}") long timeoutMillis,
+                                @Value("${judge.stub.jitter:0.2}") double jitter,
+                                @Value("${judge.stub.compile-error-rate:0.05}") double compileErrorRate,
+                                @Value("${judge.stub.timeout-rate:0.02}") double timeoutRate,
+                                @Value("${judge.stub.runtime-error-rate:0.03}") double runtimeErrorRate,
+                                @Value("${judge.stub.wrong-answer-rate:0.2}") double wrongAnswerRate) {
+        this.workspacePool = workspacePool;
+        this.compileMillis = compileMillis;
+        this.runMillis = runMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.jitter = jitter;
+        this.compileErrorRate = compileErrorRate;
+        this.timeoutRate = timeoutRate;
+        this.runtimeErrorRate = runtimeErrorRate;
+        this.wrongAnswerRate = wrongAnswerRate;
+        System.out.println("[stub] simulated execution backend: compile=" + compileMillis + "ms run=" + runMillis
+                + "ms CE=" + compileErrorRate + " TLE=" + timeoutRate + " RE=" + runtimeErrorRate + " WA=" + wrongAnswerRate);
+    }
+
+    @Override
+    public SandboxLease lease(String image, String submissionId) throws IOException {
+        return new SandboxLease(image, workspacePool.acquire(), null);
+    }
+
+    @Override
+    public void release(SandboxLease lease) {
+        workspacePool.release(lease.getWorkDir(), !lease.isBroken());
+    }
+
+    // Only used for the compile step
+    @Override
+    public ProcessRunner.ExecResult exec(SandboxLease lease, String command, Duration timeout) throws IOException, InterruptedException {
+        return compile(seed(lease.getWorkDir()));
+    }
+
+    @Override
+    public SandboxRunResult runBatch(SandboxLease lease, String language, String compile, List<Integer> tests,
+                                     int batchNo, boolean failFast) throws IOException, InterruptedException {
+        Path dir = lease.getWorkDir();
+        long seed = seed(dir);
+        SandboxRunResult result = new SandboxRunResult();
+        if (compile != null) {
+            long start = System.nanoTime();
+            ProcessRunner.ExecResult c = compile(seed);
+            result.compileExitCode = c.code;
+            result.compileOutput = c.output;
+            result.compileMillis = (System.nanoTime() - start) / 1_000_000;
+            if (!result.compiled()) return result;
+        }
+        for (int i : tests) {
+            SplittableRandom rnd = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (i + 1)));
+            double r = rnd.nextDouble();
+            Path output = dir.resolve("output" + i + ".txt");
+            int exitCode = 0;
+            String log = "";
+            long wall;
+            if (r < timeoutRate) {
+                exitCode = TIMEOUT_EXIT_CODE;
+                wall = timeoutMillis;
+                Thread.sleep(wall);
+            } else {
+                wall = latency(runMillis, rnd);
+                Thread.sleep(wall);
+                if (r < timeoutRate + runtimeErrorRate) {
+                    exitCode = 1;
+                    log = "simulated runtime error";
+                } else if (r < timeoutRate + runtimeErrorRate + wrongAnswerRate) {
+                    Files.writeString(output, "simulated wrong answer\n", StandardCharsets.UTF_8);
+                } else {
+                    Files.copy(dir.resolve("expected" + i + ".txt"), output, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            SandboxRunResult.TestRun t = new SandboxRunResult.TestRun(i, exitCode, wall, output, log);
+            t.cpuMillis = wall;
+            t.peakMemoryKb = 32_768L + rnd.nextInt(32_768);
+            result.tests.add(t);
+            if (failFast && exitCode != 0) break;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean needsExpectedOutputs() {
+        return true;
+    }
+
+    private ProcessRunner.ExecResult compile(long seed) throws InterruptedException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        boolean fails = rnd.nextDouble() < compileErrorRate;
+        Thread.sleep(latency(compileMillis, rnd));
+        return new ProcessRunner.ExecResult(fails ? 1 : 0, fails ? "Solution.java:1: error: simulated compilation error" : "");
+    }
+
+    private long latency(long base, SplittableRandom rnd) {
+        return Math.max(0, Math.round(base * (1 + jitter * (2 * rnd.nextDouble() - 1))));
+    }
+
+    // Hash of whatever code was shipped into the workspace (source or compiled classes)
+    private static long seed(Path dir) throws IOException {
+        MessageDigest md = Hashing.newDigest();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.sorted().toList()) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".java") || name.endsWith(".py") || name.endsWith(".class")) {
+                    md.update(Files.readAllBytes(p));
+                }
+            }
+        }
+        byte[] d = md.digest();
+        long seed = 0;
+        for (int i = 0; i < 8; i++) seed = (seed << 8) | (d[i] & 0xff);
+        return seed;
+    }
+}
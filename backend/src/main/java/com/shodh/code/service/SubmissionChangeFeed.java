@@ -0,0 +1,107 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.Submission;
+import com.shodh.code.repository.SubmissionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Verdicts are written by whichever judge node claimed the submission, but SSE subscribers and the
+// in-memory leaderboards live on the API nodes. This polls submissions by updatedAt and replays
+// status changes made by other nodes into the local event streams and leaderboards. The query
+// window overlaps the previous one to tolerate clock skew between nodes; repeats are filtered out.
+@Service
+@ConditionalOnProperty(name = "judge.change-feed.enabled", havingValue = "true", matchIfMissing = true)
+public class SubmissionChangeFeed {
+    private static final int PAGE = 500;
+
+    private final SubmissionRepository submissionRepository;
+    private final ProblemService problemService;
+    private final LeaderboardService leaderboardService;
+    private final EventStreamService eventStreamService;
+    private final JudgeDispatcher judgeDispatcher;
+    private final long pollMillis;
+    private final Duration overlap;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "submission-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    // poller thread only: newest change seen, and what was already applied inside the overlap window
+    private Instant cursor = Instant.now();
+    private final Map<String, Instant> applied = new HashMap<>();
+
+    public SubmissionChangeFeed(SubmissionRepository submissionRepository,
+                                ProblemService problemService,
+                                LeaderboardService leaderboardService,
+                                EventStreamService eventStreamService,
+                                JudgeDispatcher judgeDispatcher,
+                                @Value("${judge.change-feed.poll-ms:1000}") long pollMillis,
+                                @Value("${judge.change-feed.overlap-ms:5000}") long overlapMillis) {
+        this.submissionRepository = submissionRepository;
+        this.problemService = problemService;
+        this.leaderboardService = leaderboardService;
+        this.eventStreamService = eventStreamService;
+        this.judgeDispatcher = judgeDispatcher;
+        this.pollMillis = pollMillis;
+        this.overlap = Duration.ofMillis(overlapMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            Instant from = cursor.minus(overlap);
+            String fromId = null;
+            List<Submission> page;
+            do {
+                page = submissionRepository.findUpdatedSince(from, fromId, PAGE);
+                for (Submission s : page) apply(s);
+                // keyset on (updatedAt, id): rows sharing the last timestamp aren't skipped
+                if (!page.isEmpty()) {
+                    Submission last = page.get(page.size() - 1);
+                    from = last.getUpdatedAt();
+                    fromId = last.getId();
+                }
+            } while (page.size() == PAGE);
+            Instant horizon = cursor.minus(overlap);
+            applied.values().removeIf(t -> t.isBefore(horizon));
+        } catch (Exception e) {
+            System.out.println("[feed] poll failed: " + e.getMessage());
+        }
+    }
+
+    private void apply(Submission s) {
+        Instant updatedAt = s.getUpdatedAt();
+        if (updatedAt.isAfter(cursor)) cursor = updatedAt;
+        if (updatedAt.equals(applied.put(s.getId(), updatedAt))) return;
+        // this node already published its own changes; Pending carries no news
+        if (judgeDispatcher.getNodeId().equals(s.getLeaseOwner()) || "Pending".equals(s.getStatus())) return;
+
+        eventStreamService.publish(SubmissionService.topic(s.getId()), "status", SubmissionService.toStatusDto(s));
+        if (!"Running".equals(s.getStatus()) && s.getScore() != null && s.getUserId() != null) {
+            problemService.getById(s.getProblemId()).ifPresent(p ->
+                    leaderboardService.recordScore(p.getContestId(), s.getUserId(), p.getId(), s.getScore()));
+        }
+    }
+}
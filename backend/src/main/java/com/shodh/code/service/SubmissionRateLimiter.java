@@ -0,0 +1,113 @@
+package com.shodh.code.service;
+
+import com.shodh.code.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Token buckets on POST /api/submissions: up to `burst` submissions back to back, refilled at
+// `per-minute`. One bucket per user and, since the userId in the body is whatever the client says,
+// one per remote address with its own (looser, for shared NATs) limits. Buckets live on each API
+// node (behind N nodes without sticky routing a user gets up to N times the rate) in an LRU; an
+// evicted bucket comes back full.
+@Component
+public class SubmissionRateLimiter {
+    private final boolean enabled;
+    private final JudgeMetrics judgeMetrics;
+    private final Limit perUser;
+    private final Limit perAddress;
+
+    public SubmissionRateLimiter(JudgeMetrics judgeMetrics,
+                                 @Value("${ratelimit.submissions.enabled:true}") boolean enabled,
+                                 @Value("${ratelimit.submissions.burst:5}") int burst,
+                                 @Value("${ratelimit.submissions.per-minute:6}") double perMinute,
+                                 @Value("${ratelimit.submissions.address.burst:30}") int addressBurst,
+                                 @Value("${ratelimit.submissions.address.per-minute:60}") double addressPerMinute,
+                                 @Value("${ratelimit.submissions.max-keys:100000}") int maxKeys) {
+        this.judgeMetrics = judgeMetrics;
+        this.enabled = enabled;
+        this.perUser = new Limit(burst, perMinute, maxKeys);
+        this.perAddress = new Limit(addressBurst, addressPerMinute, maxKeys);
+    }
+
+    // 0 if the submission may go ahead (a token was taken from each bucket), otherwise seconds until
+    // a token is due. userId may be null (anonymous): then only the address counts. Both buckets are
+    // checked before either is charged, so a rejected request costs no tokens.
+    public long acquire(String userId, String remoteAddress) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        Bucket address = perAddress.bucket(remoteAddress, now);
+        Bucket user = userId == null ? null : perUser.bucket(userId, now);
+        long wait;
+        // locks are always taken address first, then user, so two requests can never deadlock
+        synchronized (address) {
+            if (user == null) {
+                wait = perAddress.waitSeconds(address, now);
+                if (wait == 0) address.tokens -= 1;
+            } else {
+                synchronized (user) {
+                    wait = Math.max(perAddress.waitSeconds(address, now), perUser.waitSeconds(user, now));
+                    if (wait == 0) {
+                        address.tokens -= 1;
+                        user.tokens -= 1;
+                    }
+                }
+            }
+        }
+        if (wait > 0) judgeMetrics.recordRejected("rate-limit");
+        return wait;
+    }
+
+    // Hands back the tokens of a successful acquire whose submission was turned away anyway (full
+    // judge queue), so the client's retry isn't charged twice.
+    public void refund(String userId, String remoteAddress) {
+        if (!enabled) return;
+        perAddress.refund(remoteAddress);
+        if (userId != null) perUser.refund(userId);
+    }
+
+    private static final class Limit {
+        final double burst;
+        final double tokensPerNano;
+        final BoundedCache<String, Bucket> buckets;
+
+        Limit(int burst, double perMinute, int maxKeys) {
+            this.burst = Math.max(1, burst);
+            this.tokensPerNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+            this.buckets = new BoundedCache<>(maxKeys);
+        }
+
+        Bucket bucket(String key, long now) {
+            // created atomically: two first requests must not each get a fresh, full bucket
+            return buckets.getOrCreate(key, k -> new Bucket(burst, now));
+        }
+
+        // Refills b up to now; 0 if it holds a token, else seconds until it will. Caller holds b's lock.
+        long waitSeconds(Bucket b, long now) {
+            b.tokens = Math.min(burst, b.tokens + Math.max(0, now - b.refilledAt) * tokensPerNano);
+            b.refilledAt = Math.max(b.refilledAt, now);
+            if (b.tokens >= 1) return 0;
+            if (tokensPerNano <= 0) return TimeUnit.MINUTES.toSeconds(1);
+            return Math.max(1, (long) Math.ceil((1 - b.tokens) / tokensPerNano / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        void refund(String key) {
+            Bucket b = buckets.get(key);
+            if (b == null) return; // evicted meanwhile: it comes back full anyway
+            synchronized (b) {
+                b.tokens = Math.min(burst, b.tokens + 1);
+            }
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+}
@@ -1,50 +1,178 @@
 package com.shodh.code.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shodh.code.dto.PercentilesDto;
+import com.shodh.code.dto.ProblemRunStatsDto;
+import com.shodh.code.dto.SubmissionPageDto;
+import com.shodh.code.dto.SubmissionStatusDto;
+import com.shodh.code.dto.SubmissionSummaryDto;
 import com.shodh.code.model.Submission;
+import com.shodh.code.model.SubmissionStatusChange;
+import com.shodh.code.model.TestResult;
 import com.shodh.code.repository.SubmissionRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class SubmissionService {
+    private static final int MAX_PAGE = 200;
+    private static final int EXPORT_CHUNK = 200;
+
     private final SubmissionRepository submissionRepository;
+    private final CodeBlobService codeBlobService;
+    private final EventStreamService eventStreamService;
+    private final StatusWriteBuffer statusWriteBuffer;
+    private final ObjectMapper objectMapper;
 
     public Submission create(Submission submission) {
         if (submission.getCreatedAt() == null) {
             submission.setCreatedAt(Instant.now());
         }
-        return submissionRepository.save(submission);
+        submission.setUpdatedAt(submission.getCreatedAt());
+        if (submission.getUserId() != null && submission.getProblemId() != null) {
+            submission.setResubmission(submissionRepository.existsByProblemIdAndUserId(submission.getProblemId(), submission.getUserId()));
+        }
+        // Move the source into the shared blob store; the document only keeps the hash.
+        String code = submission.getCode();
+        submission.setCodeHash(codeBlobService.store(code));
+        submission.setCode(null);
+        Submission saved = submissionRepository.save(submission);
+        // keep the text on the in-memory copy for the caller; judges claim submissions from Mongo and
+        // resolve the code from the blob
+        saved.setCode(code);
+        return saved;
     }
 
     public Optional<Submission> getById(String id) {
         return submissionRepository.findById(id);
     }
 
-    public List<Submission> getByUser(String userId) {
-        return submissionRepository.findByUserId(userId);
+    // One page of submission history, newest first. The cursor is the previous page's nextCursor.
+    public SubmissionPageDto getHistory(String userId, Collection<String> problemIds, String cursor, int limit, boolean includeCode) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE));
+        Instant beforeCreatedAt = null;
+        String beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int sep = cursor.indexOf('_');
+            try {
+                beforeCreatedAt = Instant.ofEpochMilli(Long.parseLong(cursor.substring(0, sep)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("bad cursor: " + cursor);
+            }
+            beforeId = cursor.substring(sep + 1);
+        }
+        // one extra row tells whether there is a next page
+        List<Submission> rows = submissionRepository.findHistory(userId, problemIds, beforeCreatedAt, beforeId, size + 1, includeCode);
+        boolean more = rows.size() > size;
+        if (more) rows = rows.subList(0, size);
+        Map<String, String> codes = includeCode ? codeBlobService.resolveCodes(rows) : Map.of();
+        List<SubmissionSummaryDto> items = rows.stream().map(r -> toSummaryDto(r, codes.get(r.getId()))).toList();
+        Submission last = more ? rows.get(rows.size() - 1) : null;
+        return new SubmissionPageDto(items, last == null ? null : last.getCreatedAt().toEpochMilli() + "_" + last.getId());
     }
 
-    public List<Submission> getByProblem(String problemId) {
-        return submissionRepository.findByProblemId(problemId);
+    // Everything matching, as NDJSON straight from a Mongo cursor. Code is looked up a chunk of rows
+    // at a time, so memory stays flat however many submissions match.
+    public void export(String userId, Collection<String> problemIds, boolean includeCode, OutputStream out) throws IOException {
+        List<Submission> chunk = new ArrayList<>(EXPORT_CHUNK);
+        try (Stream<Submission> rows = submissionRepository.streamHistory(userId, problemIds, includeCode)) {
+            for (Iterator<Submission> it = rows.iterator(); it.hasNext(); ) {
+                chunk.add(it.next());
+                if (chunk.size() == EXPORT_CHUNK || !it.hasNext()) {
+                    Map<String, String> codes = includeCode ? codeBlobService.resolveCodes(chunk) : Map.of();
+                    for (Submission s : chunk) {
+                        out.write(objectMapper.writeValueAsBytes(toSummaryDto(s, codes.get(s.getId()))));
+                        out.write('\n');
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+        out.flush();
     }
 
-    public List<Submission> getByProblemIds(List<String> problemIds) {
-        return submissionRepository.findByProblemIdIn(problemIds);
+    public void delete(String id) {
+        submissionRepository.deleteById(id);
     }
 
-    public Optional<Submission> updateStatus(String id, String status, String result, Integer score) {
-        return submissionRepository.findById(id).map(existing -> {
-            existing.setStatus(status);
-            existing.setResult(result);
-            if (score != null) {
-                existing.setScore(score);
-            }
-            return submissionRepository.save(existing);
-        });
+    public CompletableFuture<Boolean> updateStatus(Submission claimed, String status, String result, Integer score) {
+        return updateStatus(claimed, status, result, score, null);
+    }
+
+    // A $set of the changed fields, guarded so the status only moves forward. Verdicts may go
+    // through the write buffer; subscribers hear about a change once it's stored. The future says
+    // whether the write went through (false if the guard refused it or, when buffered, it failed).
+    // claimed is the submission as this node claimed it: a verdict only lands while its lease is ours.
+    public CompletableFuture<Boolean> updateStatus(Submission claimed, String status, String result, Integer score, List<TestResult> testResults) {
+        String id = claimed.getId();
+        SubmissionStatusChange change = new SubmissionStatusChange(id, status, result, score, testResults, Instant.now(), claimed.getLeaseOwner());
+        if (!"Pending".equals(status) && !"Running".equals(status) && statusWriteBuffer.isEnabled()) {
+            return statusWriteBuffer.submit(change).handle((applied, e) -> {
+                // a lost verdict is re-judged once the lease runs out
+                if (e != null || !applied) return false;
+                publish(change);
+                return true;
+            });
+        }
+        boolean applied = submissionRepository.applyStatus(change);
+        if (applied) publish(change);
+        return CompletableFuture.completedFuture(applied);
+    }
+
+    // The claim already stored Running; this only tells local subscribers.
+    public void publishRunning(String id) {
+        eventStreamService.publish(topic(id), "status", new SubmissionStatusDto(id, "Running", null, null));
+    }
+
+    private void publish(SubmissionStatusChange c) {
+        eventStreamService.publish(topic(c.getId()), "status", new SubmissionStatusDto(c.getId(), c.getStatus(), c.getResult(), c.getScore()));
+    }
+
+    // Nearest-rank percentiles over the tests of the last `sample` judged submissions to the problem.
+    public ProblemRunStatsDto getRunStats(String problemId, int sample) {
+        List<TestResult> rows = submissionRepository.findRecentTestResults(problemId, sample);
+        return new ProblemRunStatsDto(problemId, rows.size(),
+                percentiles(rows.stream().map(TestResult::getWallMillis).toList()),
+                percentiles(rows.stream().map(TestResult::getCpuMillis).toList()),
+                percentiles(rows.stream().map(TestResult::getPeakMemoryKb).toList()));
+    }
+
+    private static PercentilesDto percentiles(List<Long> values) {
+        long[] sorted = values.stream().filter(Objects::nonNull).mapToLong(Long::longValue).sorted().toArray();
+        if (sorted.length == 0) return new PercentilesDto(0, 0, 0, 0, 0, 0);
+        return new PercentilesDto(sorted.length, rank(sorted, 50), rank(sorted, 90), rank(sorted, 95), rank(sorted, 99),
+                sorted[sorted.length - 1]);
+    }
+
+    private static long rank(long[] sorted, int percentile) {
+        int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    public static String topic(String submissionId) {
+        return "submission:" + submissionId;
+    }
+
+    private static SubmissionSummaryDto toSummaryDto(Submission s, String code) {
+        return new SubmissionSummaryDto(s.getId(), s.getUserId(), s.getProblemId(), s.getLanguage(), s.getStatus(),
+                s.getResult(), s.getScore(), s.getCreatedAt(), code);
+    }
+
+    public static SubmissionStatusDto toStatusDto(Submission s) {
+        return new SubmissionStatusDto(s.getId(), s.getStatus(), s.getResult(), s.getScore());
     }
 }
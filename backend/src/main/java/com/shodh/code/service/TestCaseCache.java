@@ -0,0 +1,174 @@
+package com.shodh.code.service;
+
+import com.shodh.code.util.Hashing;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Judge-node disk cache of test files, one file per content hash, evicted least-recently-used
+// once the total size passes the budget. Files in use by a running submission are pinned and
+// never evicted; concurrent misses for the same hash share a single download.
+@Component
+public class TestCaseCache {
+    private final Path dir;
+    private final long maxBytes;
+
+    // access order: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public TestCaseCache(@Value("${judge.test-cache.dir:backend/tmp-tests}") String dir,
+                         @Value("${judge.test-cache.max-mb:512}") long maxMegabytes) {
+        this.dir = Paths.get(dir).toAbsolutePath();
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(dir);
+        // files from a previous run are still valid (they're named by content); partial downloads aren't
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> sorted = files.sorted((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified())).toList();
+            synchronized (this) {
+                for (Path p : sorted) {
+                    String name = p.getFileName().toString();
+                    if (name.contains(".tmp")) {
+                        Files.deleteIfExists(p);
+                        continue;
+                    }
+                    long size = Files.size(p);
+                    entries.put(name, new Entry(size));
+                    totalBytes += size;
+                }
+                evict();
+            }
+        }
+    }
+
+    // Returns the local copy of the file, fetching it through source on a miss, and pins it until
+    // release(hash) is called.
+    public Path acquire(String hash, Source source) throws IOException {
+        while (true) {
+            synchronized (this) {
+                Entry e = entries.get(hash);
+                if (e != null) {
+                    e.pins++;
+                    hits++;
+                    return dir.resolve(hash);
+                }
+            }
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> other = inflight.putIfAbsent(hash, mine);
+            if (other != null) {
+                // someone else is downloading it; wait and look again
+                other.join();
+                continue;
+            }
+            try {
+                synchronized (this) {
+                    misses++;
+                }
+                long size = download(hash, source);
+                synchronized (this) {
+                    Entry e = new Entry(size);
+                    e.pins = 1;
+                    entries.put(hash, e);
+                    totalBytes += size;
+                    evict();
+                }
+                return dir.resolve(hash);
+            } finally {
+                inflight.remove(hash, mine);
+                mine.complete(null);
+            }
+        }
+    }
+
+    public synchronized void release(String hash) {
+        Entry e = entries.get(hash);
+        if (e != null && e.pins > 0) e.pins--;
+        evict();
+    }
+
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private long download(String hash, Source source) throws IOException {
+        Path tmp = dir.resolve(hash + ".tmp-" + UUID.randomUUID());
+        try {
+            MessageDigest md = Hashing.newDigest();
+            try (InputStream in = source.open();
+                 OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), md)) {
+                in.transferTo(out);
+            }
+            String actual = HexFormat.of().formatHex(md.digest());
+            if (!actual.equals(hash)) throw new IOException("test file " + hash + " arrived with hash " + actual);
+            long size = Files.size(tmp);
+            Files.move(tmp, dir.resolve(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return size;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // caller holds the lock
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> next = it.next();
+            if (next.getValue().pins > 0) continue;
+            try {
+                Files.deleteIfExists(dir.resolve(next.getKey()));
+            } catch (IOException e) {
+                System.out.println("[test-cache] could not delete " + next.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            totalBytes -= next.getValue().size;
+            it.remove();
+        }
+    }
+
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static final class Entry {
+        final long size;
+        int pins;
+
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+}
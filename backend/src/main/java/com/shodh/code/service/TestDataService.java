@@ -0,0 +1,168 @@
+package com.shodh.code.service;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.shodh.code.model.Problem;
+import com.shodh.code.model.TestCaseRef;
+import com.shodh.code.util.Hashing;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Test data lives in GridFS, one file per distinct content (filename = sha256), and a problem only
+// carries the manifest (TestCaseRef list + testSetVersion). Judges read tests through the node-local
+// TestCaseCache, so a hot problem is fetched from Mongo once per node rather than per submission.
+@Service
+public class TestDataService {
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final TestCaseCache cache;
+
+    public TestDataService(GridFsTemplate gridFsTemplate, MongoTemplate mongoTemplate, TestCaseCache cache) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.cache = cache;
+    }
+
+    // Moves inline test cases (if any) into GridFS and replaces them with a manifest. A problem that
+    // already had a manifest gets its testSetVersion bumped.
+    public void externalize(Problem problem) {
+        List<String> inputs = problem.getInputTestCases();
+        List<String> outputs = problem.getOutputTestCases();
+        if (inputs == null && outputs == null) return;
+        int count = Math.min(inputs == null ? 0 : inputs.size(), outputs == null ? 0 : outputs.size());
+        List<TestCaseRef> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] in = bytes(inputs.get(i));
+            byte[] out = bytes(outputs.get(i));
+            refs.add(new TestCaseRef(store(in), store(out), in.length, out.length));
+        }
+        if (problem.getTestSet() != null) {
+            problem.setTestSetVersion((problem.getTestSetVersion() == null ? 1 : problem.getTestSetVersion()) + 1);
+        }
+        problem.setTestSet(refs);
+        problem.setInputTestCases(null);
+        problem.setOutputTestCases(null);
+    }
+
+    // Problems created before the manifest existed (or seeded directly) still hold inline tests.
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineTests() {
+        try {
+            Query legacy = Query.query(Criteria.where("inputTestCases").ne(null));
+            int migrated = 0;
+            for (Problem p : mongoTemplate.find(legacy, Problem.class)) {
+                externalize(p);
+                mongoTemplate.save(p);
+                migrated++;
+            }
+            if (migrated > 0) System.out.println("[tests] moved inline test cases of " + migrated + " problems to GridFS");
+        } catch (Exception e) {
+            System.out.println("[tests] inline test migration failed: " + e.getMessage());
+        }
+    }
+
+    // Pins the problem's test files in the local cache for the duration of a judge run.
+    public TestFiles open(Problem problem) throws IOException {
+        TestFiles files = new TestFiles();
+        try {
+            if (problem.getTestSet() != null) {
+                for (TestCaseRef ref : problem.getTestSet()) {
+                    Path in = files.pin(ref.getInputHash(), acquire(ref.getInputHash()));
+                    Path out = files.pin(ref.getOutputHash(), acquire(ref.getOutputHash()));
+                    files.add(in, out);
+                }
+            } else {
+                // not migrated yet: serve inline data through the same cache
+                List<String> inputs = problem.getInputTestCases();
+                List<String> outputs = problem.getOutputTestCases();
+                int count = Math.min(inputs == null ? 0 : inputs.size(), outputs == null ? 0 : outputs.size());
+                for (int i = 0; i < count; i++) {
+                    byte[] in = bytes(inputs.get(i));
+                    byte[] out = bytes(outputs.get(i));
+                    String inHash = Hashing.sha256(in);
+                    String outHash = Hashing.sha256(out);
+                    Path inPath = files.pin(inHash, cache.acquire(inHash, () -> new ByteArrayInputStream(in)));
+                    Path outPath = files.pin(outHash, cache.acquire(outHash, () -> new ByteArrayInputStream(out)));
+                    files.add(inPath, outPath);
+                }
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            files.close();
+            throw e;
+        }
+    }
+
+    private Path acquire(String hash) throws IOException {
+        return cache.acquire(hash, () -> {
+            GridFSFile file = find(hash);
+            if (file == null) throw new IOException("test file " + hash + " missing from GridFS");
+            return gridFsTemplate.getResource(file).getInputStream();
+        });
+    }
+
+    // Content-addressed, so storing the same data twice is a lookup.
+    private String store(byte[] data) {
+        String hash = Hashing.sha256(data);
+        if (find(hash) == null) {
+            gridFsTemplate.store(new ByteArrayInputStream(data), hash, "text/plain", new Document("size", data.length));
+        }
+        return hash;
+    }
+
+    private GridFSFile find(String hash) {
+        // a concurrent store of the same content may have left duplicates; they're interchangeable
+        return gridFsTemplate.find(Query.query(Criteria.where("filename").is(hash))).first();
+    }
+
+    private static byte[] bytes(String s) {
+        return (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Local paths of a problem's tests, valid until close() unpins them.
+    public class TestFiles implements AutoCloseable {
+        private final List<Path> inputs = new ArrayList<>();
+        private final List<Path> outputs = new ArrayList<>();
+        private final List<String> pinned = new ArrayList<>();
+
+        private Path pin(String hash, Path path) {
+            pinned.add(hash);
+            return path;
+        }
+
+        private void add(Path input, Path output) {
+            inputs.add(input);
+            outputs.add(output);
+        }
+
+        public int size() {
+            return inputs.size();
+        }
+
+        public Path input(int i) {
+            return inputs.get(i);
+        }
+
+        public Path expectedOutput(int i) {
+            return outputs.get(i);
+        }
+
+        @Override
+        public void close() {
+            pinned.forEach(cache::release);
+            pinned.clear();
+        }
+    }
+}
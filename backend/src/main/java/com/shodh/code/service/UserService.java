@@ -3,6 +3,13 @@ package com.shodh.code.service;
 import com.shodh.code.model.User;
 import com.shodh.code.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,6 +19,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
 
     public User create(User user) {
         return userRepository.save(user);
@@ -48,10 +56,28 @@ public class UserService {
     }
 
     public Optional<User> addScore(String userId, int delta) {
-        return userRepository.findById(userId).map(u -> {
-            int current = u.getTotalScore() != null ? u.getTotalScore() : 0;
-            u.setTotalScore(current + delta);
-            return userRepository.save(u);
-        });
+        return Optional.ofNullable(mongoTemplate.findAndModify(byId(userId),
+                new Update().inc("totalScore", delta),
+                FindAndModifyOptions.options().returnNew(true), User.class));
+    }
+
+    // One atomic round trip: raise bestScores.<problemId> to score ($max) and add only the positive
+    // difference to totalScore, so concurrent verdicts and accepted resubmissions never double count.
+    public Optional<User> recordBestScore(String userId, String problemId, int score) {
+        if (problemId == null || problemId.contains(".") || problemId.startsWith("$")) {
+            return Optional.empty();
+        }
+        String bestPath = "bestScores." + problemId;
+        Document previousBest = new Document("$ifNull", List.of("$" + bestPath, 0));
+        Document delta = new Document("$max", List.of(0, new Document("$subtract", List.of(score, previousBest))));
+        Document set = new Document("totalScore", new Document("$add", List.of(new Document("$ifNull", List.of("$totalScore", 0)), delta)))
+                .append(bestPath, new Document("$max", List.of(previousBest, score)));
+        AggregationUpdate update = AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+        return Optional.ofNullable(mongoTemplate.findAndModify(byId(userId), update,
+                FindAndModifyOptions.options().returnNew(true), User.class));
+    }
+
+    private static Query byId(String userId) {
+        return Query.query(Criteria.where("_id").is(userId));
     }
 }
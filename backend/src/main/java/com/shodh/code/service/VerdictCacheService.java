@@ -0,0 +1,49 @@
+package com.shodh.code.service;
+
+import com.shodh.code.model.CachedVerdict;
+import com.shodh.code.model.Problem;
+import com.shodh.code.model.TestResult;
+import com.shodh.code.repository.CachedVerdictRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class VerdictCacheService {
+    private final CachedVerdictRepository cachedVerdictRepository;
+    private final boolean enabled;
+
+    public VerdictCacheService(CachedVerdictRepository cachedVerdictRepository,
+                               @Value("${judge.verdict-cache.enabled:true}") boolean enabled) {
+        this.cachedVerdictRepository = cachedVerdictRepository;
+        this.enabled = enabled;
+    }
+
+    public Optional<CachedVerdict> find(Problem problem, String language, String codeHash) {
+        if (!enabled || codeHash == null) return Optional.empty();
+        return cachedVerdictRepository.findById(key(problem, language, codeHash));
+    }
+
+    public void store(Problem problem, String language, String codeHash, String status, String result, int score,
+                      List<TestResult> testResults) {
+        if (!enabled || codeHash == null) return;
+        CachedVerdict v = new CachedVerdict();
+        v.setId(key(problem, language, codeHash));
+        v.setStatus(status);
+        v.setResult(result);
+        v.setScore(score);
+        v.setTestResults(testResults);
+        v.setCreatedAt(Instant.now());
+        cachedVerdictRepository.save(v);
+    }
+
+    // Bumping the problem's testSetVersion (new tests, or new scoring/checker settings) invalidates
+    // every verdict judged before.
+    private static String key(Problem problem, String language, String codeHash) {
+        int version = problem.getTestSetVersion() != null ? problem.getTestSetVersion() : 1;
+        return problem.getId() + ":" + version + ":" + language + ":" + codeHash;
+    }
+}
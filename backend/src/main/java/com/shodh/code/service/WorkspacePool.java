@@ -0,0 +1,86 @@
+package com.shodh.code.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+// Per-submission workspace directories, emptied and handed out again instead of created and
+// deleted for every submission. With sandbox.workspace.tmpfs they live on tmpfs (/dev/shm by
+// default), so shipping code and reading results never touches the disk. Falls back to
+// sandbox.workspace-root when the tmpfs location isn't there (e.g. not Linux). What tests write
+// there is bounded by BatchScript's per-file `ulimit -f`, since on tmpfs it is host RAM.
+@Component
+public class WorkspacePool {
+    private final Path root;
+    private final boolean tmpfs;
+    private final int maxIdle;
+    private final BlockingQueue<Path> idle = new LinkedBlockingQueue<>();
+
+    public WorkspacePool(@Value("${sandbox.workspace-root:backend/tmp-exec}") String workspaceRoot,
+                         @Value("${sandbox.workspace.tmpfs:false}") boolean tmpfs,
+                         @Value("${sandbox.workspace.tmpfs-root:/dev/shm/shodh-exec}") String tmpfsRoot,
+                         @Value("${sandbox.workspace.pool-size:8}") int maxIdle) {
+        Path tmpfsPath = Paths.get(tmpfsRoot).toAbsolutePath().normalize();
+        boolean usable = tmpfs && tmpfsPath.getParent() != null && Files.isDirectory(tmpfsPath.getParent());
+        if (tmpfs && !usable) {
+            System.out.println("[sandbox] " + tmpfsPath.getParent() + " not found, workspaces stay in " + workspaceRoot);
+        }
+        this.tmpfs = usable;
+        this.root = usable ? tmpfsPath : Paths.get(workspaceRoot).toAbsolutePath().normalize();
+        this.maxIdle = maxIdle;
+    }
+
+    // Where workspaces (and anything else per-run a backend keeps) live
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean isTmpfs() {
+        return tmpfs;
+    }
+
+    // An empty directory, reused when one is idle.
+    public Path acquire() throws IOException {
+        Path dir = idle.poll();
+        if (dir != null && Files.isDirectory(dir)) return dir;
+        dir = root.resolve("ws").resolve(UUID.randomUUID().toString().substring(0, 12));
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    // Empties the directory; it's kept for the next acquire unless enough are idle already.
+    public void release(Path dir) {
+        release(dir, true);
+    }
+
+    // reusable=false for a broken lease: something may still be running in it, so it's removed
+    // instead of handed to the next submission.
+    public void release(Path dir, boolean reusable) {
+        try {
+            clear(dir);
+            if (reusable && idle.size() < maxIdle && idle.offer(dir)) return;
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            // something in it couldn't be removed; don't hand it out again
+            System.out.println("[sandbox] could not clean workspace " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static void clear(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!p.equals(dir)) Files.deleteIfExists(p);
+            }
+        }
+    }
+}
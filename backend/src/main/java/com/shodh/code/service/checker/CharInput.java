@@ -0,0 +1,32 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Single-char reads served from a char[] chunk: the checkers look at every char, and going to the
+// Reader for each one (a lock and a bounds check per call on BufferedReader) dominates their cost.
+final class CharInput {
+    private static final int CHUNK = 8192;
+
+    private final Reader in;
+    private final char[] buf = new char[CHUNK];
+    private int pos;
+    private int len;
+
+    CharInput(Reader in) {
+        this.in = in;
+    }
+
+    int read() throws IOException {
+        if (pos == len) {
+            int n;
+            do {
+                n = in.read(buf, 0, CHUNK);
+            } while (n == 0);
+            if (n < 0) return -1;
+            pos = 0;
+            len = n;
+        }
+        return buf[pos++];
+    }
+}
@@ -0,0 +1,84 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Character-exact comparison after the judge's usual normalization: leading/trailing whitespace
+// is ignored and CRLF / lone CR count as LF. Same result as comparing trim().replace(...) strings,
+// without materializing either side.
+public class ExactChecker implements OutputChecker {
+
+    @Override
+    public boolean matches(Reader expected, Reader actual) throws IOException {
+        NormalizedStream e = new NormalizedStream(expected);
+        NormalizedStream a = new NormalizedStream(actual);
+        // leading whitespace is ignored
+        int ce = e.skipWhitespace();
+        int ca = a.skipWhitespace();
+        while (true) {
+            if (isSpace(ce) || isSpace(ca)) {
+                // whitespace runs are compared as they're read, never buffered: they only have to be
+                // identical when something follows them, since trailing whitespace is ignored
+                boolean same = true;
+                while (isSpace(ce) && isSpace(ca)) {
+                    same &= ce == ca;
+                    ce = e.next();
+                    ca = a.next();
+                }
+                if (isSpace(ce)) {
+                    same = false;
+                    ce = e.skipWhitespace();
+                }
+                if (isSpace(ca)) {
+                    same = false;
+                    ca = a.skipWhitespace();
+                }
+                if (ce == -1 && ca == -1) return true;
+                if (!same) return false;
+            }
+            if (ce != ca) return false;
+            if (ce == -1) return true;
+            ce = e.next();
+            ca = a.next();
+        }
+    }
+
+    private static boolean isSpace(int c) {
+        return c != -1 && c <= ' ';
+    }
+
+    // The raw character stream with CRLF and lone CR folded into LF.
+    private static final class NormalizedStream {
+        private final CharInput in;
+        private int lookahead = -2; // -2: none buffered
+
+        NormalizedStream(Reader in) {
+            this.in = new CharInput(in);
+        }
+
+        // first non-whitespace char (or -1)
+        int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (isSpace(c));
+            return c;
+        }
+
+        int next() throws IOException {
+            int c;
+            if (lookahead != -2) {
+                c = lookahead;
+                lookahead = -2;
+            } else {
+                c = in.read();
+            }
+            if (c == '\r') {
+                int n = in.read();
+                if (n != '\n') lookahead = n;
+                return '\n';
+            }
+            return c;
+        }
+    }
+}
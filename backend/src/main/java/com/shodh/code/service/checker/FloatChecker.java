@@ -0,0 +1,55 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Token comparison where numeric tokens match within an absolute or relative tolerance
+// (e.g. 1e-6); non-numeric tokens must match exactly.
+public class FloatChecker implements OutputChecker {
+    // longer tokens aren't treated as numbers, which also bounds what we buffer per token
+    private static final int MAX_NUMBER_LENGTH = 64;
+
+    private final double tolerance;
+
+    public FloatChecker(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public boolean matches(Reader expected, Reader actual) throws IOException {
+        TokenReader e = new TokenReader(expected);
+        TokenReader a = new TokenReader(actual);
+        StringBuilder et = new StringBuilder();
+        StringBuilder at = new StringBuilder();
+        while (true) {
+            boolean hasE = e.next(et, Integer.MAX_VALUE);
+            boolean hasA = a.next(at, Math.max(et.length() + 1, MAX_NUMBER_LENGTH + 1));
+            if (hasE != hasA) return false;
+            if (!hasE) return true;
+            if (TokenChecker.sameToken(et, at) && !a.truncated()) continue;
+            Double ev = parse(et);
+            Double av = a.truncated() ? null : parse(at);
+            if (ev == null || av == null || !close(ev, av)) return false;
+        }
+    }
+
+    private boolean close(double expected, double actual) {
+        if (Double.isNaN(expected) || Double.isNaN(actual)) return false;
+        double diff = Math.abs(expected - actual);
+        return diff <= tolerance || diff <= tolerance * Math.abs(expected);
+    }
+
+    private static Double parse(CharSequence token) {
+        if (token.length() == 0 || token.length() > MAX_NUMBER_LENGTH) return null;
+        char first = token.charAt(0);
+        // Double.parseDouble also accepts things like "Infinity" and "1d"; only plain numerals count
+        if (!(first == '-' || first == '+' || first == '.' || Character.isDigit(first))) return null;
+        char last = token.charAt(token.length() - 1);
+        if (!(last == '.' || Character.isDigit(last))) return null;
+        try {
+            return Double.parseDouble(token.toString());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
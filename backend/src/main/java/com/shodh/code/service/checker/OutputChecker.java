@@ -0,0 +1,11 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Compares a program's output with the expected output. Implementations read both sides
+// incrementally and return at the first mismatch, so memory stays bounded by the buffer size
+// rather than the output size.
+public interface OutputChecker {
+    boolean matches(Reader expected, Reader actual) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.shodh.code.service.checker;
+
+import com.shodh.code.model.Problem;
+
+import java.util.Locale;
+
+// Resolves the checker configured on a problem: "exact" (default), "tokens" or "float".
+public final class OutputCheckers {
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    private static final OutputChecker EXACT = new ExactChecker();
+    private static final OutputChecker TOKENS = new TokenChecker();
+
+    private OutputCheckers() {
+    }
+
+    public static OutputChecker forProblem(Problem problem) {
+        String name = problem.getChecker() == null ? "exact" : problem.getChecker().trim().toLowerCase(Locale.ROOT);
+        return switch (name) {
+            case "tokens", "token", "whitespace" -> TOKENS;
+            case "float", "double" -> new FloatChecker(
+                    problem.getCheckerTolerance() != null ? problem.getCheckerTolerance() : DEFAULT_TOLERANCE);
+            default -> EXACT;
+        };
+    }
+}
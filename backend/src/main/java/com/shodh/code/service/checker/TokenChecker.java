@@ -0,0 +1,33 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Whitespace-insensitive comparison: the outputs match when they have the same sequence of
+// whitespace-separated tokens, however the tokens are spaced or split across lines.
+public class TokenChecker implements OutputChecker {
+
+    @Override
+    public boolean matches(Reader expected, Reader actual) throws IOException {
+        TokenReader e = new TokenReader(expected);
+        TokenReader a = new TokenReader(actual);
+        StringBuilder et = new StringBuilder();
+        StringBuilder at = new StringBuilder();
+        while (true) {
+            boolean hasE = e.next(et, Integer.MAX_VALUE);
+            // the actual token never needs to be longer than the expected one to decide
+            boolean hasA = a.next(at, et.length() + 1);
+            if (hasE != hasA) return false;
+            if (!hasE) return true;
+            if (!sameToken(et, at)) return false;
+        }
+    }
+
+    static boolean sameToken(CharSequence a, CharSequence b) {
+        if (a.length() != b.length()) return false;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+}
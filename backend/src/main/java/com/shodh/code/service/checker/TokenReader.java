@@ -0,0 +1,40 @@
+package com.shodh.code.service.checker;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Splits a character stream into whitespace-separated tokens, storing at most maxLength chars
+// of the current token so one giant token can't blow up memory.
+final class TokenReader {
+    private final CharInput in;
+    private boolean truncated;
+
+    TokenReader(Reader in) {
+        this.in = new CharInput(in);
+    }
+
+    // Reads the next token into out (cleared first); false at EOF. A token longer than maxLength
+    // is consumed entirely, but only its prefix is stored and truncated() reports it.
+    boolean next(StringBuilder out, int maxLength) throws IOException {
+        out.setLength(0);
+        truncated = false;
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && c <= ' ');
+        if (c == -1) return false;
+        while (c != -1 && c > ' ') {
+            if (out.length() < maxLength) {
+                out.append((char) c);
+            } else {
+                truncated = true;
+            }
+            c = in.read();
+        }
+        return true;
+    }
+
+    boolean truncated() {
+        return truncated;
+    }
+}
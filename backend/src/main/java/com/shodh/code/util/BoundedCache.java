@@ -0,0 +1,111 @@
+package com.shodh.code.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Small thread-safe LRU cache with an optional time-to-live and hit/miss counters.
+public class BoundedCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> map;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    public BoundedCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> e = map.get(key);
+        if (e != null && e.expired()) {
+            map.remove(key);
+            evictions++;
+            e = null;
+        }
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, new Entry<>(value, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos));
+    }
+
+    // The loader runs outside the lock, so two concurrent misses may both load; last write wins.
+    public V getOrLoad(K key, Function<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) return cached;
+        V loaded = loader.apply(key);
+        if (loaded != null) put(key, loaded);
+        return loaded;
+    }
+
+    // Like getOrLoad, but the loader runs under the lock so concurrent misses end up with the same
+    // value. Only for cheap loaders (it blocks every other caller meanwhile).
+    public synchronized V getOrCreate(K key, Function<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) return cached;
+        V created = loader.apply(key);
+        if (created != null) put(key, created);
+        return created;
+    }
+
+    public synchronized void invalidate(K key) {
+        map.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired() {
+            return expiresAt != 0 && System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.shodh.code.util;
+
+// Strong ETag values for JSON responses, derived from the data behind them (or a version number)
+// rather than from the serialized body, so a 304 can be answered before anything is rendered.
+public final class ETags {
+    private ETags() {}
+
+    public static String of(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object p : parts) sb.append(p).append('\u0000');
+        return "\"" + Hashing.sha256(sb.toString()).substring(0, 32) + "\"";
+    }
+}
@@ -0,0 +1,27 @@
+package com.shodh.code.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class Hashing {
+    private Hashing() {}
+
+    public static String sha256(String text) {
+        return sha256(text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha256(byte[] bytes) {
+        MessageDigest md = newDigest();
+        return HexFormat.of().formatHex(md.digest(bytes));
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
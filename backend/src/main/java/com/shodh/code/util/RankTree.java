@@ -0,0 +1,159 @@
+package com.shodh.code.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Order-statistic treap: insert/remove/rank/select in O(log n). Elements must be unique under the
+// comparator. Not thread-safe; callers synchronize.
+public class RankTree<T> {
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    public RankTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public void insert(T value) {
+        root = insert(root, new Node<>(value, ThreadLocalRandom.current().nextInt()));
+    }
+
+    public boolean remove(T value) {
+        int before = size(root);
+        root = remove(root, value);
+        return size(root) != before;
+    }
+
+    // Number of elements strictly less than value (value itself need not be present).
+    public int rank(T value) {
+        int rank = 0;
+        Node<T> n = root;
+        while (n != null) {
+            int c = comparator.compare(value, n.value);
+            if (c <= 0) {
+                n = n.left;
+            } else {
+                rank += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return rank;
+    }
+
+    // Element at zero-based position k in comparator order.
+    public T select(int k) {
+        Node<T> n = root;
+        while (n != null) {
+            int leftSize = size(n.left);
+            if (k < leftSize) {
+                n = n.left;
+            } else if (k == leftSize) {
+                return n.value;
+            } else {
+                k -= leftSize + 1;
+                n = n.right;
+            }
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    // Up to limit elements starting at position offset: O(log n + limit).
+    public List<T> range(int offset, int limit) {
+        List<T> out = new ArrayList<>(Math.max(0, Math.min(limit, size() - offset)));
+        collect(root, offset, limit, out);
+        return out;
+    }
+
+    private void collect(Node<T> n, int offset, int limit, List<T> out) {
+        if (n == null || out.size() >= limit) return;
+        int leftSize = size(n.left);
+        if (offset < leftSize) collect(n.left, offset, limit, out);
+        if (out.size() >= limit) return;
+        if (offset <= leftSize) out.add(n.value);
+        collect(n.right, Math.max(0, offset - leftSize - 1), limit, out);
+    }
+
+    private Node<T> insert(Node<T> n, Node<T> fresh) {
+        if (n == null) return fresh;
+        if (comparator.compare(fresh.value, n.value) < 0) {
+            n.left = insert(n.left, fresh);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, fresh);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        n.update();
+        return n;
+    }
+
+    private Node<T> remove(Node<T> n, T value) {
+        if (n == null) return null;
+        int c = comparator.compare(value, n.value);
+        if (c < 0) {
+            n.left = remove(n.left, value);
+        } else if (c > 0) {
+            n.right = remove(n.right, value);
+        } else {
+            return merge(n.left, n.right);
+        }
+        n.update();
+        return n;
+    }
+
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        n.update();
+        l.update();
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        n.update();
+        r.update();
+        return r;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        Node<T> left;
+        Node<T> right;
+        int size = 1;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        void update() {
+            size = 1 + RankTree.size(left) + RankTree.size(right);
+        }
+    }
+}
@@ -5,17 +5,20 @@ export default function Leaderboard({ contestId }) {
   const [entries, setEntries] = useState([])
   const [loading, setLoading] = useState(true)
   const [error, setError] = useState('')
-  const pollRef = useRef(null)
+  const sourceRef = useRef(null)
+
+  function applyEntries(data) {
+    // Ensure sorted desc just in case
+    const sorted = (data || []).slice().sort((a, b) => (b.totalScore || 0) - (a.totalScore || 0))
+    setEntries(sorted)
+  }
 
   async function fetchLeaderboard(id) {
     try {
       setError('')
       const res = await fetch(`${API_BASE_URL}/api/contests/${id}/leaderboard`)
       if (!res.ok) throw new Error('Failed to load leaderboard')
-      const data = await res.json()
-      // Ensure sorted desc just in case
-      const sorted = (data || []).slice().sort((a, b) => (b.totalScore || 0) - (a.totalScore || 0))
-      setEntries(sorted)
+      applyEntries(await res.json())
     } catch (e) {
       setError(e.message || 'Failed to load leaderboard')
     } finally {
@@ -27,11 +30,20 @@ export default function Leaderboard({ contestId }) {
     if (!contestId) return
     setLoading(true)
     fetchLeaderboard(contestId)
-    if (pollRef.current) clearInterval(pollRef.current)
-    pollRef.current = setInterval(() => fetchLeaderboard(contestId), 20000)
+    if (sourceRef.current) sourceRef.current.close()
+    // Server pushes the ranking when it changes; EventSource reconnects on its own (with Last-Event-ID)
+    const source = new EventSource(`${API_BASE_URL}/api/contests/${contestId}/leaderboard/events`)
+    source.addEventListener('leaderboard', (ev) => {
+      try {
+        applyEntries(JSON.parse(ev.data))
+        setError('')
+        setLoading(false)
+      } catch {}
+    })
+    sourceRef.current = source
     return () => {
-      if (pollRef.current) clearInterval(pollRef.current)
-      pollRef.current = null
+      source.close()
+      sourceRef.current = null
     }
   }, [contestId])
 
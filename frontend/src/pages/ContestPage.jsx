@@ -3,6 +3,9 @@ import { useParams } from 'react-router-dom'
 import Editor from '@monaco-editor/react'
 import Leaderboard from '../components/Leaderboard.jsx'
 import { API_BASE_URL } from '../config'
+
+const FINAL_STATUSES = ['Accepted', 'Partially Accepted', 'Wrong Answer', 'Error']
+
 export default function ContestPage() {
   const { id } = useParams()
   const [loading, setLoading] = useState(true)
@@ -13,7 +16,7 @@ export default function ContestPage() {
   const [submitting, setSubmitting] = useState(false)
   const [submissionId, setSubmissionId] = useState('')
   const [submissionStatus, setSubmissionStatus] = useState('')
-  const pollRef = useRef(null)
+  const streamRef = useRef(null)
 
   useEffect(() => {
     let cancelled = false
@@ -40,9 +43,9 @@ export default function ContestPage() {
 
   useEffect(() => {
     return () => {
-      if (pollRef.current) {
-        clearInterval(pollRef.current)
-        pollRef.current = null
+      if (streamRef.current) {
+        streamRef.current.close()
+        streamRef.current = null
       }
     }
   }, [])
@@ -79,19 +82,20 @@ export default function ContestPage() {
       const sid = data?.submissionId
       setSubmissionId(sid)
       setSubmissionStatus('Pending')
-      if (pollRef.current) clearInterval(pollRef.current)
-      pollRef.current = setInterval(async () => {
+      if (streamRef.current) streamRef.current.close()
+      // Status transitions are pushed by the server until a final verdict arrives
+      const source = new EventSource(`${API_BASE_URL}/api/submissions/${sid}/events`)
+      source.addEventListener('status', (ev) => {
         try {
-          const sres = await fetch(`${API_BASE_URL}/api/submissions/${sid}`)
-          if (!sres.ok) return
-          const sdata = await sres.json()
+          const sdata = JSON.parse(ev.data)
           setSubmissionStatus(sdata?.status || '')
-          if (sdata?.status === 'Accepted' || sdata?.status === 'Wrong Answer' || sdata?.status === 'Error') {
-            clearInterval(pollRef.current)
-            pollRef.current = null
+          if (FINAL_STATUSES.includes(sdata?.status)) {
+            source.close()
+            if (streamRef.current === source) streamRef.current = null
           }
         } catch {}
-      }, 3000)
+      })
+      streamRef.current = source
     } catch (e) {
       setError(e.message || 'Submission failed')
     } finally {